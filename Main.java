@@ -2,9 +2,14 @@ package edu.ccrm;
 
 import edu.ccrm.config.AppConfig;
 import edu.ccrm.domain.*;
+import edu.ccrm.io.BackupService;
+import edu.ccrm.io.Checkpointer;
 import edu.ccrm.io.ImportExportService;
+import edu.ccrm.io.SnapshotFile;
+import edu.ccrm.io.StateJournal;
+import edu.ccrm.io.WriteAheadLog;
 import edu.ccrm.service.CourseService;
-import edu.ccrm.service.StudentService;
+import edu.ccrm.service.EnrollmentDecision;
 import edu.ccrm.service.EnrollmentService;
 import edu.ccrm.service.impl.CourseServiceImpl;
 import edu.ccrm.service.impl.StudentServiceImpl;
@@ -20,49 +25,90 @@ public class Main {
             // Initialize configuration and services
             AppConfig config = AppConfig.getInstance();
             Path dataDir = config.getDataFolderPath();
+
+            // Put a backup back first; it then loads through the snapshot like any other start
+            if (args.length == 2 && args[0].equals("--restore")) {
+                Path backup = Paths.get(args[1]).toAbsolutePath();
+                BackupService backupService = new BackupService(backup.getParent());
+                System.out.println(backupService.restoreBackup(backup, dataDir));
+            }
             
             // Create service instances
-            StudentService studentService = new StudentServiceImpl();
+            StudentServiceImpl studentService = new StudentServiceImpl();
             CourseService courseService = new CourseServiceImpl(studentService);
             EnrollmentService enrollmentService = new EnrollmentServiceImpl(studentService, courseService, config.getMaxCreditsPerSemester());
+            studentService.setEnrollmentService(enrollmentService);
             
             // Initialize import/export service
             ImportExportService importExport = new ImportExportService(dataDir);
 
-            System.out.println("Importing sample data...");
-            
-            // Import students and courses from CSV files
-            List<Student> students = importExport.importStudents(Paths.get("test-data/students.csv"));
-            List<Course> courses = importExport.importCourses(Paths.get("test-data/courses.csv"));
-
-            // Add imported data to services
-            for (Student student : students) {
-                studentService.create(student);
-            }
-            for (Course course : courses) {
-                courseService.create(course);
+            // Load the last checkpoint, if any, instead of parsing CSV
+            SnapshotFile snapshot = new SnapshotFile(dataDir.resolve("state.snapshot"));
+            long snapshotLsn = 0;
+            if (snapshot.exists()) {
+                long start = System.nanoTime();
+                snapshotLsn = snapshot.load(studentService, courseService, enrollmentService);
+                System.out.printf("Loaded snapshot in %d ms%n", (System.nanoTime() - start) / 1_000_000);
             }
 
-            // Display imported data
-            System.out.println("\nImported Students:");
-            students.forEach(System.out::println);
+            // Replay changes made since the checkpoint, then journal every change from here on
+            try (StateJournal journal = new StateJournal(new WriteAheadLog(dataDir.resolve("journal"), snapshotLsn),
+                    studentService, courseService, enrollmentService);
+                 Checkpointer checkpointer = new Checkpointer(snapshot, journal.getLog(),
+                    studentService, courseService, enrollmentService, snapshotLsn)) {
+                long replayed = journal.replay(snapshotLsn);
+                journal.attach();
+                checkpointer.start();
 
-            System.out.println("\nImported Courses:");
-            courses.forEach(System.out::println);
+                List<Student> students;
+                List<Course> courses;
+                if (snapshot.exists() || replayed > 0) {
+                    System.out.println("Restored " + replayed + " journaled changes");
+                    students = studentService.findAll();
+                    courses = courseService.findAll();
+                } else {
+                    System.out.println("Importing sample data...");
 
-            // Test enrollment
-            System.out.println("\nTesting enrollment...");
-            Student student = students.get(0);
-            Course course = courses.get(0);
-            
-            enrollmentService.enrollStudent(student.getId(), course.getCode());
-            System.out.println("Enrolled " + student.getFullName() + " in " + course.getTitle());
-
-            // Record a grade
-            System.out.println("\nRecording grades...");
-            enrollmentService.recordGrade(student.getId(), course.getCode(), Grade.A);
-            System.out.println("Recorded grade for " + student.getFullName());
-            System.out.println("Current GPA: " + student.getGpa());
+                    // Import students and courses from CSV files
+                    students = importExport.importStudents(Paths.get("test-data/students.csv"));
+                    courses = importExport.importCourses(Paths.get("test-data/courses.csv"));
+
+                    // Add imported data to services
+                    for (Student student : students) {
+                        studentService.create(student);
+                    }
+                    for (Course course : courses) {
+                        courseService.create(course);
+                    }
+                }
+
+                // Display data
+                System.out.println("\nStudents:");
+                students.forEach(System.out::println);
+
+                System.out.println("\nCourses:");
+                courses.forEach(System.out::println);
+
+                // Test enrollment
+                System.out.println("\nTesting enrollment...");
+                Student student = students.get(0);
+                Course course = courses.get(0);
+
+                EnrollmentDecision decision = enrollmentService.tryEnrollStudent(student.getId(), course.getCode());
+                System.out.println(decision.isAllowed()
+                    ? "Enrolled " + student.getFullName() + " in " + course.getTitle()
+                    : "Enrollment of " + student.getFullName() + " not made: " + decision);
+
+                // Record a grade
+                System.out.println("\nRecording grades...");
+                enrollmentService.recordGrade(student.getId(), course.getCode(), Grade.A);
+                System.out.println("Recorded grade for " + student.getFullName());
+                System.out.println("Current GPA: " + student.getGpa());
+
+                // Checkpoint so the next start neither parses nor replays it
+                checkpointer.checkpoint();
+                System.out.println("\n" + checkpointer.getStats());
+            }
 
             System.out.println("\nDemo completed successfully!");
 
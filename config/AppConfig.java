@@ -7,11 +7,41 @@ public class AppConfig {
     private static AppConfig instance;
     private final Path dataFolderPath;
     private final int maxCreditsPerSemester;
+    private final int lockStripes;
+    private final int leaderboardSize;
+    private final int transcriptCacheSize;
+    private final int graduationCredits;
+    private final int exportThreads;
+    private final int exportConcurrentWrites;
+    private final long journalSyncIntervalMillis;
+    private final boolean journalSyncOnCommit;
+    private final long journalSegmentBytes;
+    private final int snapshotLoadThreads;
+    private final long checkpointIntervalMillis;
+    private final long checkpointMaxRecords;
+    private final int backupThreads;
+    private final int backupCompressionLevel;
+    private final int importThreads;
 
     private AppConfig() {
         // Default configuration
         this.dataFolderPath = Paths.get(System.getProperty("user.dir"), "data");
         this.maxCreditsPerSemester = 21;
+        this.lockStripes = Runtime.getRuntime().availableProcessors() * 16;
+        this.leaderboardSize = 50;
+        this.transcriptCacheSize = 10_000;
+        this.graduationCredits = 120;
+        this.exportThreads = Runtime.getRuntime().availableProcessors();
+        this.exportConcurrentWrites = 4;
+        this.journalSyncIntervalMillis = Long.getLong("ccrm.journal.syncIntervalMillis", 2);
+        this.journalSyncOnCommit = true;
+        this.journalSegmentBytes = 64L * 1024 * 1024;
+        this.snapshotLoadThreads = Runtime.getRuntime().availableProcessors();
+        this.checkpointIntervalMillis = 60_000;
+        this.checkpointMaxRecords = 500_000;
+        this.backupThreads = Runtime.getRuntime().availableProcessors();
+        this.backupCompressionLevel = 6;
+        this.importThreads = Runtime.getRuntime().availableProcessors();
     }
 
     public static AppConfig getInstance() {
@@ -32,4 +62,69 @@ public class AppConfig {
     public int getMaxCreditsPerSemester() {
         return maxCreditsPerSemester;
     }
+
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    public int getLeaderboardSize() {
+        return leaderboardSize;
+    }
+
+    public int getTranscriptCacheSize() {
+        return transcriptCacheSize;
+    }
+
+    public int getGraduationCredits() {
+        return graduationCredits;
+    }
+
+    public int getExportThreads() {
+        return exportThreads;
+    }
+
+    public int getExportConcurrentWrites() {
+        return exportConcurrentWrites;
+    }
+
+    // How long the journal, while several writers wait on it, gathers more into one fsync;
+    // set with -Dccrm.journal.syncIntervalMillis
+    public long getJournalSyncIntervalMillis() {
+        return journalSyncIntervalMillis;
+    }
+
+    // Whether a journaled change waits for its fsync before returning
+    public boolean isJournalSyncOnCommit() {
+        return journalSyncOnCommit;
+    }
+
+    public long getJournalSegmentBytes() {
+        return journalSegmentBytes;
+    }
+
+    public int getSnapshotLoadThreads() {
+        return snapshotLoadThreads;
+    }
+
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    // Journal records after which a checkpoint is taken early; bounds recovery replay
+    public long getCheckpointMaxRecords() {
+        return checkpointMaxRecords;
+    }
+
+    public int getBackupThreads() {
+        return backupThreads;
+    }
+
+    // Deflate level for archive backups, 1 (fastest) to 9 (smallest)
+    public int getBackupCompressionLevel() {
+        return backupCompressionLevel;
+    }
+
+    public int getImportThreads() {
+        return importThreads;
+    }
 }
\ No newline at end of file
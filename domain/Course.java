@@ -1,6 +1,29 @@
 package edu.ccrm.domain;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 public class Course {
+    /** Mutable course attributes reported to {@link ChangeListener}s. */
+    public enum Field { TITLE, CREDITS, INSTRUCTOR, SEMESTER, DEPARTMENT, ACTIVE, CAPACITY, PREREQUISITES }
+
+    /** Notified after a setter changes the value of a field. */
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onChange(Course course, Field field, Object oldValue, Object newValue);
+
+        /** Called before a setter stores a new value; throwing rejects the change. */
+        default void beforeChange(Course course, Field field, Object oldValue, Object newValue) {
+        }
+    }
+
     private final String code;
     private String title;
     private int credits;
@@ -8,6 +31,14 @@ public class Course {
     private Semester semester;
     private String department;
     private boolean active;
+    // Seat limit (0 = unlimited) and seats currently reserved or taken
+    private volatile int capacity;
+    private final AtomicInteger seatsTaken = new AtomicInteger();
+    // Codes of courses that must be completed first; replaced, never mutated in place
+    private volatile Set<String> prerequisites;
+    private final CopyOnWriteArrayList<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Guards credits and semester; see valuesReadLock()
+    private final ReadWriteLock valuesLock = new ReentrantReadWriteLock();
 
     private Course(Builder builder) {
         this.code = builder.code;
@@ -16,6 +47,8 @@ public class Course {
         this.instructor = builder.instructor;
         this.semester = builder.semester;
         this.department = builder.department;
+        this.capacity = builder.capacity;
+        this.prerequisites = Collections.unmodifiableSet(new LinkedHashSet<>(builder.prerequisites));
         this.active = true;
     }
 
@@ -27,14 +60,185 @@ public class Course {
     public Semester getSemester() { return semester; }
     public String getDepartment() { return department; }
     public boolean isActive() { return active; }
+    public int getCapacity() { return capacity; }
+    public Set<String> getPrerequisites() { return prerequisites; }
+    public int getSeatsTaken() { return seatsTaken.get(); }
+    public boolean hasCapacityLimit() { return capacity > 0; }
+
+    /**
+     * Shared lock over credits and semester. Code that reads them and records
+     * the result elsewhere (per-student credit totals, say) holds it across
+     * both steps. {@link #setCredits} and {@link #setSemester} hold the
+     * exclusive side across the write and its listeners, so a listener that
+     * adjusts such records never overlaps a reader that already saw the new
+     * value.
+     */
+    public Lock valuesReadLock() {
+        return valuesLock.readLock();
+    }
+
+    public int getAvailableSeats() {
+        return hasCapacityLimit() ? Math.max(capacity - seatsTaken.get(), 0) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Claims a seat without locking: retries a compare-and-set until it either
+     * takes a seat or observes the course full. A successful reservation must
+     * later be kept (the enrollment commits) or returned via {@link #releaseSeat()}.
+     */
+    public boolean tryReserveSeat() {
+        while (true) {
+            int taken = seatsTaken.get();
+            int limit = capacity;
+            if (limit > 0 && taken >= limit) {
+                return false;
+            }
+            if (seatsTaken.compareAndSet(taken, taken + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Takes a seat regardless of capacity, for enrollments being restored rather than made. */
+    public void occupySeat() {
+        seatsTaken.incrementAndGet();
+    }
+
+    /** Returns a seat, either rolling back a reservation or after a drop. */
+    public void releaseSeat() {
+        seatsTaken.updateAndGet(taken -> taken > 0 ? taken - 1 : 0);
+    }
 
     // Setters for mutable fields
-    public void setTitle(String title) { this.title = title; }
-    public void setCredits(int credits) { this.credits = credits; }
-    public void setInstructor(Person instructor) { this.instructor = instructor; }
-    public void setSemester(Semester semester) { this.semester = semester; }
-    public void setDepartment(String department) { this.department = department; }
-    public void setActive(boolean active) { this.active = active; }
+    public void setTitle(String title) {
+        String old = this.title;
+        checkChange(Field.TITLE, old, title);
+        this.title = title;
+        fireChange(Field.TITLE, old, title);
+    }
+
+    public void setCredits(int credits) {
+        valuesLock.writeLock().lock();
+        try {
+            int old = this.credits;
+            checkChange(Field.CREDITS, old, credits);
+            this.credits = credits;
+            fireChange(Field.CREDITS, old, credits);
+        } finally {
+            valuesLock.writeLock().unlock();
+        }
+    }
+
+    public void setInstructor(Person instructor) {
+        Person old = this.instructor;
+        checkChange(Field.INSTRUCTOR, old, instructor);
+        this.instructor = instructor;
+        fireChange(Field.INSTRUCTOR, old, instructor);
+    }
+
+    public void setSemester(Semester semester) {
+        valuesLock.writeLock().lock();
+        try {
+            Semester old = this.semester;
+            checkChange(Field.SEMESTER, old, semester);
+            this.semester = semester;
+            fireChange(Field.SEMESTER, old, semester);
+        } finally {
+            valuesLock.writeLock().unlock();
+        }
+    }
+
+    public void setDepartment(String department) {
+        String old = this.department;
+        checkChange(Field.DEPARTMENT, old, department);
+        this.department = department;
+        fireChange(Field.DEPARTMENT, old, department);
+    }
+
+    public void setActive(boolean active) {
+        boolean old = this.active;
+        checkChange(Field.ACTIVE, old, active);
+        this.active = active;
+        fireChange(Field.ACTIVE, old, active);
+    }
+
+    public void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+        int old = this.capacity;
+        checkChange(Field.CAPACITY, old, capacity);
+        this.capacity = capacity;
+        fireChange(Field.CAPACITY, old, capacity);
+    }
+
+    /**
+     * Prerequisite edits on all courses are serialized on {@code Course.class},
+     * so a listener that vetoes cycles in {@link ChangeListener#beforeChange}
+     * sees every edge committed before it.
+     */
+    public void addPrerequisite(String courseCode) {
+        if (courseCode == null) {
+            throw new IllegalArgumentException("Prerequisite course code cannot be null");
+        }
+        if (courseCode.equals(code)) {
+            throw new IllegalArgumentException("Course cannot be its own prerequisite: " + code);
+        }
+        synchronized (Course.class) {
+            if (!prerequisites.contains(courseCode)) {
+                Set<String> updated = new LinkedHashSet<>(prerequisites);
+                updated.add(courseCode);
+                replacePrerequisites(updated);
+            }
+        }
+    }
+
+    public void removePrerequisite(String courseCode) {
+        synchronized (Course.class) {
+            if (prerequisites.contains(courseCode)) {
+                Set<String> updated = new LinkedHashSet<>(prerequisites);
+                updated.remove(courseCode);
+                replacePrerequisites(updated);
+            }
+        }
+    }
+
+    private void replacePrerequisites(Set<String> updated) {
+        Set<String> old = prerequisites;
+        Set<String> replacement = Collections.unmodifiableSet(updated);
+        checkChange(Field.PREREQUISITES, old, replacement);
+        prerequisites = replacement;
+        fireChange(Field.PREREQUISITES, old, prerequisites);
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void checkChange(Field field, Object oldValue, Object newValue) {
+        if (Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        for (ChangeListener listener : listeners) {
+            listener.beforeChange(this, field, oldValue, newValue);
+        }
+    }
+
+    private void fireChange(Field field, Object oldValue, Object newValue) {
+        if (Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        for (ChangeListener listener : listeners) {
+            listener.onChange(this, field, oldValue, newValue);
+        }
+    }
 
     @Override
     public String toString() {
@@ -50,6 +254,8 @@ public class Course {
         private Person instructor;
         private Semester semester;
         private String department = "";
+        private int capacity = 0;
+        private final Set<String> prerequisites = new LinkedHashSet<>();
 
         public Builder(String code) {
             this.code = code;
@@ -80,6 +286,24 @@ public class Course {
             return this;
         }
 
+        public Builder capacity(int capacity) {
+            if (capacity < 0) {
+                throw new IllegalArgumentException("Capacity cannot be negative");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder prerequisites(String... courseCodes) {
+            for (String courseCode : courseCodes) {
+                if (courseCode == null || courseCode.equals(code)) {
+                    throw new IllegalArgumentException("Invalid prerequisite for " + code + ": " + courseCode);
+                }
+                prerequisites.add(courseCode);
+            }
+            return this;
+        }
+
         public Course build() {
             return new Course(this);
         }
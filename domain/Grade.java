@@ -10,13 +10,18 @@ public enum Grade {
 
     private final double points;
     private final String description;
+    private final int pointTenths;
 
     Grade(double points, String description) {
         this.points = points;
         this.description = description;
+        this.pointTenths = (int) Math.round(points * 10);
     }
 
     public double getPoints() { return points; }
+    // Exact integer form of the points, for running sums free of rounding drift
+    public int getPointTenths() { return pointTenths; }
+    public boolean isPassing() { return this != F; }
     public String getDescription() { return description; }
 
     @Override
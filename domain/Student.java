@@ -1,20 +1,33 @@
 package edu.ccrm.domain;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class Student extends Person {
+    /** Notified after {@link #setGpa} changes the stored GPA. */
+    @FunctionalInterface
+    public interface GpaListener {
+        void onGpaChanged(Student student, double oldGpa, double newGpa);
+    }
+
     private final String regNo;
-    private final List<Course> enrolledCourses;
+    private final CopyOnWriteArrayList<Course> enrolledCourses;
     private final LocalDateTime enrollmentDate;
-    private double gpa;
+    private volatile double gpa;
+    // Running GPA inputs: sum of grade points x credits (in tenths) and graded credits
+    private long qualityPointTenths;
+    private int gradedCredits;
+    // Enrolled credits per semester, indexed by Semester ordinal
+    private final AtomicIntegerArray semesterCredits = new AtomicIntegerArray(Semester.values().length);
+    private final CopyOnWriteArrayList<GpaListener> gpaListeners = new CopyOnWriteArrayList<>();
 
     public Student(String id, String fullName, String email, String regNo) {
         super(id, fullName, email);
         this.regNo = regNo;
-        this.enrolledCourses = new ArrayList<>();
+        this.enrolledCourses = new CopyOnWriteArrayList<>();
         this.enrollmentDate = LocalDateTime.now();
         this.gpa = 0.0;
     }
@@ -40,19 +53,82 @@ public class Student extends Person {
         return gpa;
     }
 
-    public void setGpa(double gpa) {
+    // Synchronized so listeners see one student's changes in order
+    public synchronized void setGpa(double gpa) {
         if (gpa < 0.0 || gpa > 4.3) {
             throw new IllegalArgumentException("GPA must be between 0.0 and 4.3");
         }
+        double old = this.gpa;
         this.gpa = gpa;
+        if (Double.compare(old, gpa) != 0) {
+            for (GpaListener listener : gpaListeners) {
+                listener.onGpaChanged(this, old, gpa);
+            }
+        }
+    }
+
+    public void addGpaListener(GpaListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        gpaListeners.addIfAbsent(listener);
+    }
+
+    public void removeGpaListener(GpaListener listener) {
+        gpaListeners.remove(listener);
+    }
+
+    public synchronized double getQualityPoints() {
+        return qualityPointTenths / 10.0;
+    }
+
+    public synchronized int getGradedCredits() {
+        return gradedCredits;
+    }
+
+    /** GPA implied by the running totals. */
+    public synchronized double calculateRunningGpa() {
+        return gradedCredits > 0 ? qualityPointTenths / (10.0 * gradedCredits) : 0.0;
+    }
+
+    /**
+     * Adjusts the running totals for a grade change in a course worth
+     * {@code credits}; {@code null} stands for "no grade".
+     */
+    public synchronized void applyGradeChange(Grade previous, Grade current, int credits) {
+        if (previous != null) {
+            qualityPointTenths -= (long) previous.getPointTenths() * credits;
+            gradedCredits -= credits;
+        }
+        if (current != null) {
+            qualityPointTenths += (long) current.getPointTenths() * credits;
+            gradedCredits += credits;
+        }
+    }
+
+    /** Adjusts the running totals when a graded course changes its credit value. */
+    public synchronized void applyCreditChange(Grade grade, int oldCredits, int newCredits) {
+        applyGradeChange(grade, null, oldCredits);
+        applyGradeChange(null, grade, newCredits);
+    }
+
+    public int getSemesterCredits(Semester semester) {
+        return semester == null ? 0 : semesterCredits.get(semester.ordinal());
+    }
+
+    /** Shifts the enrolled-credit counter, e.g. when an enrolled course changes its credits. */
+    public void adjustSemesterCredits(Semester semester, int delta) {
+        if (semester != null) {
+            semesterCredits.addAndGet(semester.ordinal(), delta);
+        }
     }
 
     public void enrollInCourse(Course course) {
         if (course == null) {
             throw new IllegalArgumentException("Course cannot be null");
         }
-        if (!enrolledCourses.contains(course)) {
-            enrolledCourses.add(course);
+        if (enrolledCourses.addIfAbsent(course)) {
+            adjustSemesterCredits(course.getSemester(), course.getCredits());
         }
     }
 
@@ -60,7 +136,9 @@ public class Student extends Person {
         if (course == null) {
             throw new IllegalArgumentException("Course cannot be null");
         }
-        enrolledCourses.remove(course);
+        if (enrolledCourses.remove(course)) {
+            adjustSemesterCredits(course.getSemester(), -course.getCredits());
+        }
     }
 
     @Override
@@ -0,0 +1,20 @@
+package edu.ccrm.exception;
+
+public class CourseFullException extends RuntimeException {
+    private final String courseCode;
+    private final int capacity;
+
+    public CourseFullException(String courseCode, int capacity) {
+        super(String.format("Course %s is full (capacity %d)", courseCode, capacity));
+        this.courseCode = courseCode;
+        this.capacity = capacity;
+    }
+
+    public String getCourseCode() {
+        return courseCode;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+package edu.ccrm.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Index of a backup: for every file, its path relative to the backed-up
+ * directory, size, modification time and SHA-256 of the content.
+ *
+ * <p>Stored as one tab-separated line per file under {@link #FILE_NAME} in
+ * the backup directory. It is written last and moved into place, so a
+ * backup without a manifest is one that never finished.
+ */
+public class BackupManifest {
+    public static final String FILE_NAME = ".manifest";
+    private static final String HEADER = "# ccrm backup manifest v1";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public void add(Entry entry) {
+        entries.put(entry.getPath(), entry);
+    }
+
+    /** Entry for a path in {@code /}-separated form, or {@code null}. */
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.getSize();
+        }
+        return total;
+    }
+
+    /** Writes the manifest into {@code backupDirectory}, replacing any earlier one atomically. */
+    public void write(Path backupDirectory) {
+        Path target = backupDirectory.resolve(FILE_NAME);
+        Path temp = backupDirectory.resolve(FILE_NAME + TEMP_EXTENSION);
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writeTo(writer);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write backup manifest: " + target, e);
+        }
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (Entry entry : entries.values()) {
+            writer.write(entry.getSha256() + "\t" + entry.getSize() + "\t"
+                + entry.getModifiedNanos() + "\t" + entry.getPath());
+            writer.write('\n');
+        }
+    }
+
+    /** Whether {@code backupDirectory} holds a finished backup. */
+    public static boolean exists(Path backupDirectory) {
+        return Files.isRegularFile(backupDirectory.resolve(FILE_NAME));
+    }
+
+    public static BackupManifest read(Path backupDirectory) {
+        Path file = backupDirectory.resolve(FILE_NAME);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader, file.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read backup manifest: " + file, e);
+        }
+    }
+
+    /** Reads a manifest; {@code source} names where it came from, for errors. */
+    public static BackupManifest read(BufferedReader reader, String source) throws IOException {
+        BackupManifest manifest = new BackupManifest();
+        String line = reader.readLine();
+        if (!HEADER.equals(line)) {
+            throw new IllegalStateException("Not a backup manifest: " + source);
+        }
+        while ((line = reader.readLine()) != null) {
+            // The path goes last, so it may contain tabs itself
+            String[] fields = line.split("\t", 4);
+            if (fields.length != 4) {
+                throw new IllegalStateException("Malformed backup manifest line in " + source + ": " + line);
+            }
+            manifest.add(new Entry(fields[3], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+        }
+        return manifest;
+    }
+
+    /** Converts a relative path to the {@code /}-separated form used as the manifest key. */
+    public static String toKey(Path relativePath) {
+        StringJoiner key = new StringJoiner("/");
+        for (Path name : relativePath) {
+            key.add(name.toString());
+        }
+        return key.toString();
+    }
+
+    public static final class Entry {
+        private final String path;
+        private final long size;
+        private final long modifiedNanos;
+        private final String sha256;
+
+        public Entry(String path, long size, long modifiedNanos, String sha256) {
+            this.path = path;
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.sha256 = sha256;
+        }
+
+        public String getPath() { return path; }
+        public long getSize() { return size; }
+        public long getModifiedNanos() { return modifiedNanos; }
+        /** Lower-case hex SHA-256 of the content. */
+        public String getSha256() { return sha256; }
+
+        /** Whether a file with this size and modification time can be taken as unchanged. */
+        public boolean matches(long size, long modifiedNanos) {
+            return this.size == size && this.modifiedNanos == modifiedNanos;
+        }
+    }
+}
\ No newline at end of file
@@ -2,26 +2,77 @@ package edu.ccrm.io;
 
 import edu.ccrm.config.AppConfig;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class BackupService {
+    public static final String ARCHIVE_EXTENSION = ".zip";
+    private static final String TEMP_EXTENSION = ".tmp";
+    // Siblings of the data directory during a restore; same file system, so renames are atomic
+    private static final String STAGING_EXTENSION = ".restore";
+    private static final String PREVIOUS_EXTENSION = ".previous";
+    // Bytes read and deflated per task; large files are split across workers
+    private static final int CHUNK_BYTES = 1 << 20;
+    // Deflate window: each chunk is primed with this much of the one before
+    private static final int DICTIONARY_BYTES = 32 * 1024;
+
     private final Path backupRoot;
     private final DateTimeFormatter timestampFormat;
+    private final int threads;
+    private final int compressionLevel;
 
     public BackupService(Path backupRoot) {
+        this(backupRoot, AppConfig.getInstance().getBackupThreads(),
+            AppConfig.getInstance().getBackupCompressionLevel());
+    }
+
+    public BackupService(Path backupRoot, int threads, int compressionLevel) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        if (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9");
+        }
         this.backupRoot = backupRoot;
         this.timestampFormat = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+        this.threads = threads;
+        this.compressionLevel = compressionLevel;
         createDirectoryIfNotExists(backupRoot);
     }
 
-    public Path createBackup(Path sourceDirectory) throws IOException {
-        String timestamp = LocalDateTime.now().format(timestampFormat);
-        Path backupDir = backupRoot.resolve("backup_" + timestamp);
+    /**
+     * Backs up every regular file under {@code sourceDirectory} into a new
+     * {@code backup_<timestamp>} directory, with a {@link BackupManifest}.
+     * Files whose size and modification time match the latest finished
+     * backup are hard-linked to its copy, or copied where the file system
+     * cannot link; only new and changed files are read, hashed and copied.
+     * Each backup is still a complete tree of its own.
+     */
+    public synchronized Path createBackup(Path sourceDirectory) throws IOException {
+        Path previousDir = findLatestBackup();
+        BackupManifest previous = previousDir == null ? new BackupManifest() : BackupManifest.read(previousDir);
+        Path backupDir = newBackupPath("");
         Files.createDirectories(backupDir);
+        BackupManifest manifest = new BackupManifest();
 
         try (Stream<Path> paths = Files.walk(sourceDirectory)) {
             paths.filter(Files::isRegularFile)
@@ -30,17 +81,269 @@ public class BackupService {
                      Path targetPath = backupDir.resolve(relativePath);
                      try {
                          Files.createDirectories(targetPath.getParent());
-                         Files.copy(source, targetPath, StandardCopyOption.REPLACE_EXISTING);
+                         manifest.add(backupFile(source, targetPath, BackupManifest.toKey(relativePath),
+                             previousDir, previous));
                      } catch (IOException e) {
                          throw new UncheckedIOException("Failed to backup file: " + source, e);
                      }
                  });
         }
 
+        manifest.write(backupDir);
         return backupDir;
     }
 
+    private BackupManifest.Entry backupFile(Path source, Path target, String key, Path previousDir,
+                                            BackupManifest previous) throws IOException {
+        // Read before the content, so a change during the copy shows up as changed next time
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        BackupManifest.Entry earlier = previous.get(key);
+        if (earlier != null && earlier.matches(attributes.size(), modified)) {
+            Path earlierCopy = previousDir.resolve(key);
+            if (Files.isRegularFile(earlierCopy) && Files.size(earlierCopy) == earlier.getSize()) {
+                linkOrCopy(earlierCopy, target);
+                return earlier;
+            }
+        }
+
+        MessageDigest digest = newSha256();
+        long size;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest)) {
+            size = Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new BackupManifest.Entry(key, size, modified, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private void linkOrCopy(Path existing, Path target) throws IOException {
+        try {
+            Files.createLink(target, existing);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // No hard links here, the backup root spans devices, or the link limit is reached
+            Files.copy(existing, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Backs up every regular file under {@code sourceDirectory} into a single
+     * {@code backup_<timestamp>.zip}, with the {@link BackupManifest} as its
+     * last entry. Files are read in chunks on one thread and deflated on a
+     * bounded pool while the archive is written in order, so reading,
+     * compressing and writing overlap. The archive appears under its final
+     * name only once complete.
+     */
+    public synchronized Path createArchiveBackup(Path sourceDirectory) throws IOException {
+        Path archive = newBackupPath(ARCHIVE_EXTENSION);
+        Path temp = archive.resolveSibling(archive.getFileName() + TEMP_EXTENSION);
+        // At most this many chunks are read ahead of the writer, bounding memory
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(threads * 2);
+        BackupManifest manifest = new BackupManifest();
+        ExecutorService compressors = Executors.newFixedThreadPool(threads);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        boolean complete = false;
+
+        try {
+            Future<?> reading = reader.submit(() -> {
+                readChunks(sourceDirectory, chunks, compressors, manifest);
+                return null;
+            });
+            try (ZipArchiveWriter out = new ZipArchiveWriter(temp)) {
+                while (true) {
+                    Chunk chunk = chunks.poll(100, TimeUnit.MILLISECONDS);
+                    if (chunk == null) {
+                        // The reader queues its last chunk before it finishes
+                        if (!reading.isDone() || !chunks.isEmpty()) {
+                            continue;
+                        }
+                        reading.get();
+                        break;
+                    }
+                    writeChunk(out, chunk);
+                }
+                writeManifest(out, manifest);
+            }
+            Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE);
+            complete = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Archive backup interrupted: " + archive);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Archive backup failed", cause);
+        } finally {
+            reader.shutdownNow();
+            compressors.shutdownNow();
+            if (!complete) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return archive;
+    }
+
+    // Runs on the reader thread: hands every chunk of every file to the pool, in order
+    private void readChunks(Path sourceDirectory, BlockingQueue<Chunk> chunks, ExecutorService compressors,
+                            BackupManifest manifest) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(sourceDirectory)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path source : files) {
+            String key = BackupManifest.toKey(sourceDirectory.relativize(source));
+            BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+            FileInfo file = new FileInfo(key, attributes.lastModifiedTime().toMillis());
+            MessageDigest digest = newSha256();
+            CRC32 crc = new CRC32();
+            byte[] previous = null;
+            try (InputStream in = Files.newInputStream(source)) {
+                boolean first = true;
+                while (true) {
+                    // Sized to what is left, so a small file does not cost a full chunk
+                    byte[] data = new byte[(int) Math.min(CHUNK_BYTES, Math.max(attributes.size() - file.size, 0) + 1)];
+                    int length = in.readNBytes(data, 0, data.length);
+                    boolean last = length < data.length;
+                    crc.update(data, 0, length);
+                    digest.update(data, 0, length);
+                    file.size += length;
+                    if (last) {
+                        file.crc = crc.getValue();
+                    }
+                    byte[] dictionary = previous;
+                    Future<byte[]> deflated = compressors.submit(() -> deflate(data, length, dictionary, last));
+                    chunks.put(new Chunk(file, first, last, deflated));
+                    if (last) {
+                        break;
+                    }
+                    previous = data;
+                    first = false;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to backup file: " + source, e);
+            }
+            manifest.add(new BackupManifest.Entry(key, file.size,
+                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), HexFormat.of().formatHex(digest.digest())));
+        }
+    }
+
+    /**
+     * Raw deflate of one chunk. A chunk that is not the file's last ends on a
+     * sync flush rather than a final block, so the chunks of a file
+     * concatenate into one valid deflate stream.
+     */
+    private byte[] deflate(byte[] data, int length, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (dictionary != null) {
+                int dictionaryLength = Math.min(dictionary.length, DICTIONARY_BYTES);
+                deflater.setDictionary(dictionary, dictionary.length - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(data, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (true) {
+                int written = deflater.deflate(buffer, 0, buffer.length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, written);
+                if (last ? deflater.finished() : written < buffer.length) {
+                    return out.toByteArray();
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeChunk(ZipArchiveWriter out, Chunk chunk) throws IOException, InterruptedException,
+                                                                       ExecutionException {
+        if (chunk.first) {
+            out.beginEntry(chunk.file.key, chunk.file.modifiedMillis);
+        }
+        byte[] deflated = chunk.deflated.get();
+        out.writeDeflated(deflated, deflated.length);
+        if (chunk.last) {
+            out.endEntry(chunk.file.crc, chunk.file.size);
+        }
+    }
+
+    private void writeManifest(ZipArchiveWriter out, BackupManifest manifest) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(content, StandardCharsets.UTF_8)) {
+            manifest.writeTo(writer);
+        }
+        byte[] data = content.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        byte[] deflated = deflate(data, data.length, null, true);
+        out.beginEntry(BackupManifest.FILE_NAME, System.currentTimeMillis());
+        out.writeDeflated(deflated, deflated.length);
+        out.endEntry(crc.getValue(), data.length);
+    }
+
+    private Path newBackupPath(String extension) {
+        String name = "backup_" + LocalDateTime.now().format(timestampFormat);
+        Path backup = backupRoot.resolve(name + extension);
+        // A second backup within the same second must not land in the first one
+        for (int attempt = 1; Files.exists(backup) || Files.exists(backupRoot.resolve(backup.getFileName() + TEMP_EXTENSION));
+             attempt++) {
+            backup = backupRoot.resolve(name + "_" + attempt + extension);
+        }
+        return backup;
+    }
+
+    private static boolean isArchive(Path backup) {
+        return backup.getFileName().toString().endsWith(ARCHIVE_EXTENSION);
+    }
+
+    /** Latest backup with a manifest, or {@code null} if there is none. */
+    private Path findLatestBackup() throws IOException {
+        for (Path backup : listBackups()) {
+            if (Files.isDirectory(backup) && BackupManifest.exists(backup)) {
+                return backup;
+            }
+        }
+        return null;
+    }
+
+    /** Backup directories and archives, finished or not, newest first. */
+    private List<Path> listBackups() throws IOException {
+        try (Stream<Path> backups = Files.list(backupRoot)) {
+            return backups.filter(path -> path.getFileName().toString().startsWith("backup_"))
+                          .sorted((p1, p2) -> p2.getFileName().toString().compareTo(p1.getFileName().toString()))
+                          .collect(Collectors.toList());
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Total size of the files in a backup. For an archive this is read from
+     * its index and is the size before compression.
+     */
     public long calculateBackupSize(Path backupDirectory) {
+        if (isArchive(backupDirectory)) {
+            long size = 0;
+            try (ZipFile archive = new ZipFile(backupDirectory.toFile())) {
+                for (ZipEntry entry : Collections.list(archive.entries())) {
+                    size += entry.getSize();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read backup archive: " + backupDirectory, e);
+            }
+            return size;
+        }
         AtomicLong size = new AtomicLong(0);
         try (Stream<Path> paths = Files.walk(backupDirectory)) {
             paths.filter(Files::isRegularFile)
@@ -58,6 +361,10 @@ public class BackupService {
     }
 
     public void listBackupContents(Path backupDirectory, int maxDepth) throws IOException {
+        if (isArchive(backupDirectory)) {
+            listArchiveContents(backupDirectory, maxDepth);
+            return;
+        }
         try (Stream<Path> paths = Files.walk(backupDirectory, maxDepth)) {
             paths.forEach(path -> {
                 int depth = backupDirectory.relativize(path).getNameCount();
@@ -67,20 +374,222 @@ public class BackupService {
         }
     }
 
-    public void cleanupOldBackups(int keepLatest) throws IOException {
-        try (Stream<Path> backups = Files.list(backupRoot)
-                .filter(Files::isDirectory)
-                .filter(path -> path.getFileName().toString().startsWith("backup_"))
-                .sorted((p1, p2) -> p2.getFileName().toString().compareTo(p1.getFileName().toString()))) {
-            
-            backups.skip(keepLatest)
-                   .forEach(path -> {
-                       try {
-                           deleteRecursively(path);
-                       } catch (IOException e) {
-                           throw new UncheckedIOException("Failed to delete backup: " + path, e);
-                       }
-                   });
+    // Same tree as for a directory, built from the archive's index
+    private void listArchiveContents(Path archivePath, int maxDepth) throws IOException {
+        SortedSet<List<String>> tree = new TreeSet<>(BackupService::compareSegments);
+        try (ZipFile archive = new ZipFile(archivePath.toFile())) {
+            for (ZipEntry entry : Collections.list(archive.entries())) {
+                List<String> segments = Arrays.asList(entry.getName().split("/"));
+                for (int depth = 1; depth <= Math.min(segments.size(), maxDepth); depth++) {
+                    tree.add(segments.subList(0, depth));
+                }
+            }
+        }
+        System.out.printf("%s%n", archivePath.getFileName());
+        for (List<String> path : tree) {
+            System.out.printf("%s%s%n", "  ".repeat(path.size()), path.get(path.size() - 1));
+        }
+    }
+
+    private static int compareSegments(List<String> a, List<String> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int order = a.get(i).compareTo(b.get(i));
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+
+    /**
+     * Restores a backup, directory or archive, into {@code dataDirectory}.
+     * Files are copied or extracted in parallel into a staging directory next
+     * to it, each checked against the size and SHA-256 in the backup's
+     * manifest and forced to disk. Only if every file matches is the staging
+     * directory swapped in by rename; otherwise the data directory is left as
+     * it was. Services should be started afterwards, so they load the
+     * restored snapshot and journal.
+     */
+    public synchronized RestoreReport restoreBackup(Path backup, Path dataDirectory) throws IOException {
+        long start = System.nanoTime();
+        Path staging = dataDirectory.resolveSibling(dataDirectory.getFileName() + STAGING_EXTENSION);
+        Path previous = dataDirectory.resolveSibling(dataDirectory.getFileName() + PREVIOUS_EXTENSION);
+        recoverInterruptedSwap(dataDirectory, previous);
+        deleteRecursively(staging);
+        Files.createDirectories(staging);
+
+        BackupManifest manifest;
+        try {
+            manifest = restoreFiles(backup, staging);
+        } catch (IOException | RuntimeException | Error e) {
+            try {
+                deleteRecursively(staging);
+            } catch (IOException | UncheckedIOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+
+        if (Files.exists(dataDirectory)) {
+            Files.move(dataDirectory, previous, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(staging, dataDirectory, StandardCopyOption.ATOMIC_MOVE);
+        deleteRecursively(previous);
+        return new RestoreReport(manifest.size(), manifest.getTotalBytes(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Restores every file in the backup's manifest into {@code staging} in
+     * parallel. Returns only once no task is running, so a caller cleaning up
+     * after a failure never races a task still writing.
+     */
+    private BackupManifest restoreFiles(Path backup, Path staging) throws IOException {
+        try (ZipFile archive = isArchive(backup) ? new ZipFile(backup.toFile()) : null) {
+            BackupManifest manifest = archive != null ? readManifest(archive, backup) : BackupManifest.read(backup);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> files = new ArrayList<>(manifest.size());
+                for (BackupManifest.Entry entry : manifest.getEntries()) {
+                    files.add(pool.submit(() -> {
+                        restoreFile(entry, openBackupFile(backup, archive, entry), resolveInside(staging, entry));
+                        return null;
+                    }));
+                }
+                for (Future<?> file : files) {
+                    file.get();
+                }
+                return manifest;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Restore interrupted: " + backup);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Restore failed: " + backup, cause);
+            } finally {
+                pool.shutdownNow();
+                // Before the archive closes under them
+                awaitTermination(pool);
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService pool) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Copied, never linked: the journal is appended in place and would change the backup with it
+    private void restoreFile(BackupManifest.Entry entry, InputStream in, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        MessageDigest digest = newSha256();
+        long size = 0;
+        try (InputStream source = in;
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = source.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+                size += read;
+            }
+            out.force(true);
+        }
+        if (size != entry.getSize() || !HexFormat.of().formatHex(digest.digest()).equals(entry.getSha256())) {
+            throw new IllegalStateException("Backup file does not match its manifest: " + entry.getPath());
+        }
+        // As recorded, so the next incremental backup sees the file unchanged
+        Files.setLastModifiedTime(target, FileTime.from(entry.getModifiedNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    private static InputStream openBackupFile(Path backup, ZipFile archive, BackupManifest.Entry entry)
+            throws IOException {
+        if (archive == null) {
+            return Files.newInputStream(resolveInside(backup, entry));
+        }
+        ZipEntry zipEntry = archive.getEntry(entry.getPath());
+        if (zipEntry == null) {
+            throw new IllegalStateException("Backup archive is missing " + entry.getPath() + ": " + backup);
+        }
+        return archive.getInputStream(zipEntry);
+    }
+
+    private static BackupManifest readManifest(ZipFile archive, Path backup) throws IOException {
+        ZipEntry entry = archive.getEntry(BackupManifest.FILE_NAME);
+        if (entry == null) {
+            throw new IllegalStateException("Backup archive has no manifest: " + backup);
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(archive.getInputStream(entry), StandardCharsets.UTF_8))) {
+            return BackupManifest.read(reader, backup.toString());
+        }
+    }
+
+    // Manifest paths come from a file on disk; never let one point outside the directory
+    private static Path resolveInside(Path directory, BackupManifest.Entry entry) {
+        Path resolved = directory.resolve(entry.getPath()).normalize();
+        if (!resolved.startsWith(directory.normalize())) {
+            throw new IllegalStateException("Backup path outside the backup: " + entry.getPath());
+        }
+        return resolved;
+    }
+
+    // A restore stopped between its two renames left the old data aside: put it back
+    private void recoverInterruptedSwap(Path dataDirectory, Path previous) throws IOException {
+        if (!Files.exists(previous)) {
+            return;
+        }
+        if (Files.exists(dataDirectory)) {
+            deleteRecursively(previous);
+        } else {
+            Files.move(previous, dataDirectory, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Deletes all but the latest {@code keepLatest} finished backups, and any
+     * unfinished backup older than the newest finished one. Directory and
+     * archive backups count alike. Shared files are hard links, so deleting
+     * a backup never takes content from another.
+     */
+    public synchronized void cleanupOldBackups(int keepLatest) throws IOException {
+        int finished = 0;
+        for (Path backup : listBackups()) {
+            boolean complete = Files.isDirectory(backup) ? BackupManifest.exists(backup) : isArchive(backup);
+            // An unfinished backup newer than every finished one may still be in progress
+            boolean delete = complete ? finished >= keepLatest : finished > 0;
+            if (complete) {
+                finished++;
+            }
+            if (!delete) {
+                continue;
+            }
+            if (Files.isDirectory(backup)) {
+                // Unfinished from here on, so a partial delete is never used as a base
+                Files.deleteIfExists(backup.resolve(BackupManifest.FILE_NAME));
+                deleteRecursively(backup);
+            } else {
+                Files.deleteIfExists(backup);
+            }
         }
     }
 
@@ -120,4 +629,53 @@ public class BackupService {
 
         return String.format("%.2f %s", size, units[unitIndex]);
     }
+
+    // One file in an archive; size and CRC are complete once its last chunk is queued
+    private static final class FileInfo {
+        final String key;
+        final long modifiedMillis;
+        long size;
+        long crc;
+
+        FileInfo(String key, long modifiedMillis) {
+            this.key = key;
+            this.modifiedMillis = modifiedMillis;
+        }
+    }
+
+    private static final class Chunk {
+        final FileInfo file;
+        final boolean first;
+        final boolean last;
+        final Future<byte[]> deflated;
+
+        Chunk(FileInfo file, boolean first, boolean last, Future<byte[]> deflated) {
+            this.file = file;
+            this.first = first;
+            this.last = last;
+            this.deflated = deflated;
+        }
+    }
+
+    /** Outcome of a restore. */
+    public static final class RestoreReport {
+        private final int files;
+        private final long bytes;
+        private final Duration elapsed;
+
+        RestoreReport(int files, long bytes, Duration elapsed) {
+            this.files = files;
+            this.bytes = bytes;
+            this.elapsed = elapsed;
+        }
+
+        public int getFiles() { return files; }
+        public long getBytes() { return bytes; }
+        public Duration getElapsed() { return elapsed; }
+
+        @Override
+        public String toString() {
+            return String.format("Restored %d files, %d bytes, in %d ms", files, bytes, elapsed.toMillis());
+        }
+    }
 }
\ No newline at end of file
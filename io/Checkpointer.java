@@ -0,0 +1,197 @@
+package edu.ccrm.io;
+
+import edu.ccrm.config.AppConfig;
+import edu.ccrm.service.CourseService;
+import edu.ccrm.service.EnrollmentService;
+import edu.ccrm.service.StudentService;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background thread that writes a checkpoint (a {@link SnapshotFile} of the
+ * full state) and then deletes the journal segments the checkpoint covers.
+ * Recovery loads the checkpoint and replays only the journal after it.
+ *
+ * <p>A checkpoint is due once the interval has passed since the last one,
+ * or sooner once the journal has grown by the configured number of
+ * records, which bounds how much a recovery has to replay. Writers are not
+ * paused: the checkpoint is tagged with the last LSN appended before it
+ * starts reading, and replay of the records after that LSN is idempotent.
+ */
+public class Checkpointer implements Closeable {
+    // How often the thread checks whether a checkpoint is due
+    private static final long POLL_MILLIS = 1000;
+
+    private final SnapshotFile snapshot;
+    private final WriteAheadLog log;
+    private final StudentService studentService;
+    private final CourseService courseService;
+    private final EnrollmentService enrollmentService;
+    private final long intervalNanos;
+    private final long maxRecords;
+    private ScheduledExecutorService scheduler;
+
+    private volatile long checkpointLsn;
+    private volatile long lastStartNanos = System.nanoTime();
+    private volatile long checkpoints;
+    private volatile long lastDurationNanos;
+    private volatile long totalDurationNanos;
+    private volatile long lastBytes;
+    private volatile long segmentsDeleted;
+    private volatile RuntimeException lastFailure;
+
+    public Checkpointer(SnapshotFile snapshot, WriteAheadLog log, StudentService studentService,
+                        CourseService courseService, EnrollmentService enrollmentService, long checkpointLsn) {
+        this(snapshot, log, studentService, courseService, enrollmentService, checkpointLsn,
+            AppConfig.getInstance().getCheckpointIntervalMillis(), AppConfig.getInstance().getCheckpointMaxRecords());
+    }
+
+    /** {@code checkpointLsn} is the LSN of the checkpoint recovery started from, or 0. */
+    public Checkpointer(SnapshotFile snapshot, WriteAheadLog log, StudentService studentService,
+                        CourseService courseService, EnrollmentService enrollmentService, long checkpointLsn,
+                        long intervalMillis, long maxRecords) {
+        if (intervalMillis <= 0 || maxRecords <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval and record limit must be positive");
+        }
+        this.snapshot = snapshot;
+        this.log = log;
+        this.studentService = studentService;
+        this.courseService = courseService;
+        this.enrollmentService = enrollmentService;
+        this.checkpointLsn = checkpointLsn;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.maxRecords = maxRecords;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long poll = Math.min(POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+        scheduler.scheduleWithFixedDelay(this::checkpointIfDue, poll, poll, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a checkpoint now, unless nothing was journaled since the last
+     * one, and truncates the journal behind it. Returns whether one was written.
+     */
+    public synchronized boolean checkpoint() {
+        long lsn = log.getLastLsn();
+        if (lsn == checkpointLsn) {
+            return false;
+        }
+        long start = System.nanoTime();
+        lastStartNanos = start;
+        // Nothing in the checkpoint may be missing from the journal it replaces
+        log.sync();
+        snapshot.write(studentService, courseService, enrollmentService, lsn);
+        checkpointLsn = lsn;
+        segmentsDeleted += log.truncateThrough(lsn);
+
+        long duration = System.nanoTime() - start;
+        lastDurationNanos = duration;
+        totalDurationNanos += duration;
+        lastBytes = snapshot.getFile().toFile().length();
+        checkpoints++;
+        return true;
+    }
+
+    public Stats getStats() {
+        return new Stats(checkpoints, checkpointLsn, log.getLastLsn() - checkpointLsn, log.getSizeOnDisk(),
+            log.getSegmentCount(), segmentsDeleted, Duration.ofNanos(lastDurationNanos),
+            Duration.ofNanos(totalDurationNanos), lastBytes, lastFailure);
+    }
+
+    /** Stops the background thread; a checkpoint in progress finishes first. */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            running.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkpointIfDue() {
+        long pending = log.getLastLsn() - checkpointLsn;
+        boolean due = pending >= maxRecords
+            || (pending > 0 && System.nanoTime() - lastStartNanos >= intervalNanos);
+        if (!due) {
+            return;
+        }
+        try {
+            checkpoint();
+            lastFailure = null;
+        } catch (RuntimeException e) {
+            // Kept for the stats; the journal still holds everything, so retry next time
+            lastFailure = e;
+        }
+    }
+
+    /** Checkpoint and journal figures at one moment. */
+    public static final class Stats {
+        private final long checkpoints;
+        private final long checkpointLsn;
+        private final long recordsSinceCheckpoint;
+        private final long journalBytes;
+        private final int journalSegments;
+        private final long segmentsDeleted;
+        private final Duration lastDuration;
+        private final Duration totalDuration;
+        private final long lastCheckpointBytes;
+        private final RuntimeException lastFailure;
+
+        Stats(long checkpoints, long checkpointLsn, long recordsSinceCheckpoint, long journalBytes,
+              int journalSegments, long segmentsDeleted, Duration lastDuration, Duration totalDuration,
+              long lastCheckpointBytes, RuntimeException lastFailure) {
+            this.checkpoints = checkpoints;
+            this.checkpointLsn = checkpointLsn;
+            this.recordsSinceCheckpoint = recordsSinceCheckpoint;
+            this.journalBytes = journalBytes;
+            this.journalSegments = journalSegments;
+            this.segmentsDeleted = segmentsDeleted;
+            this.lastDuration = lastDuration;
+            this.totalDuration = totalDuration;
+            this.lastCheckpointBytes = lastCheckpointBytes;
+            this.lastFailure = lastFailure;
+        }
+
+        public long getCheckpoints() { return checkpoints; }
+        public long getCheckpointLsn() { return checkpointLsn; }
+        /** Journal records a recovery would replay now; bounds recovery time. */
+        public long getRecordsSinceCheckpoint() { return recordsSinceCheckpoint; }
+        public long getJournalBytes() { return journalBytes; }
+        public int getJournalSegments() { return journalSegments; }
+        public long getSegmentsDeleted() { return segmentsDeleted; }
+        public Duration getLastDuration() { return lastDuration; }
+        public Duration getTotalDuration() { return totalDuration; }
+        public long getLastCheckpointBytes() { return lastCheckpointBytes; }
+        /** Failure of the last background checkpoint, or {@code null} if it succeeded. */
+        public RuntimeException getLastFailure() { return lastFailure; }
+
+        @Override
+        public String toString() {
+            return String.format("%d checkpoints (last at LSN %d, %d ms, %d bytes), %d records since, "
+                    + "journal %d bytes in %d segments, %d segments deleted%s",
+                checkpoints, checkpointLsn, lastDuration.toMillis(), lastCheckpointBytes, recordsSinceCheckpoint,
+                journalBytes, journalSegments, segmentsDeleted, lastFailure == null ? "" : ", last failed");
+        }
+    }
+}
\ No newline at end of file
@@ -1,45 +1,333 @@
 package edu.ccrm.io;
 
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Reads and writes RFC 4180 CSV: fields may be quoted, and quoted fields
+ * may contain the delimiter, line breaks and doubled quotes. Records are
+ * scanned by {@link CsvScanner} into a reused {@link CsvRow}; a
+ * {@link RowMapper} reads the fields from it without a String per field.
+ * The delimiter is a single character, taken literally.
+ */
 public class CsvParser<T> {
+    // Bytes per parallel parsing task
+    private static final long CHUNK_BYTES = 8L * 1024 * 1024;
+    // Bytes mapped at a time while looking for chunk boundaries, and copied out at a time
+    private static final long SPLIT_WINDOW_BYTES = 256L * 1024 * 1024;
+    private static final int SPLIT_BUFFER_BYTES = 64 * 1024;
+
     private final Path filePath;
-    private final Function<String[], T> mapper;
-    private final String delimiter;
+    private final RowMapper<T> mapper;
+    private final char delimiter;
     private final boolean hasHeader;
 
     public CsvParser(Path filePath, Function<String[], T> mapper, String delimiter, boolean hasHeader) {
+        this(filePath, (RowMapper<T>) row -> mapper.apply(row.toArray()), delimiter, hasHeader);
+    }
+
+    public CsvParser(Path filePath, RowMapper<T> mapper, String delimiter, boolean hasHeader) {
+        if (delimiter == null || delimiter.length() != 1) {
+            throw new IllegalArgumentException("CSV delimiter must be a single character");
+        }
         this.filePath = filePath;
         this.mapper = mapper;
-        this.delimiter = delimiter;
+        this.delimiter = delimiter.charAt(0);
         this.hasHeader = hasHeader;
     }
 
+    /** Maps the records lazily; close the stream to close the file. */
     public Stream<T> parse() throws IOException {
-        Stream<String> lines = Files.lines(filePath);
+        CsvScanner scanner = open();
+        Iterator<T> records = new Iterator<>() {
+            private final CsvRow row = new CsvRow();
+            private boolean ready;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready && !done) {
+                    try {
+                        ready = scanner.next(row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to read CSV: " + filePath, e);
+                    }
+                    done = !ready;
+                }
+                return ready;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return mapper.map(row);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED), false)
+            .onClose(() -> {
+                try {
+                    scanner.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to close CSV: " + filePath, e);
+                }
+            });
+    }
+
+    /** Hands every record to {@code consumer} in turn; nothing is allocated per record. */
+    public void forEach(RowConsumer consumer) throws IOException {
+        try (CsvScanner scanner = open()) {
+            CsvRow row = new CsvRow();
+            while (scanner.next(row)) {
+                consumer.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Parses the file on {@code threads} cores and hands the records to
+     * {@code sink} on the calling thread. The file is memory-mapped and cut
+     * into chunks of whole records; only a line break outside quotes ends a
+     * chunk. With {@code ordered}, records arrive in file order; without it,
+     * each chunk's records arrive as soon as that chunk is parsed. The
+     * delimiter must be an ASCII character.
+     */
+    public void parseParallel(int threads, boolean ordered, Consumer<? super T> sink) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        if (delimiter >= 0x80) {
+            throw new IllegalArgumentException("Parallel parsing needs an ASCII delimiter");
+        }
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            // Chunks are cut as the pool takes them, so splitting overlaps parsing
+            ChunkSplitter splitter = new ChunkSplitter(channel);
+            // Parsed chunks not yet handed on are held in memory; keep their number bounded
+            int window = threads * 2;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                Chunk chunk = splitter.next();
+                if (ordered) {
+                    Deque<Future<List<T>>> pending = new ArrayDeque<>();
+                    while (chunk != null || !pending.isEmpty()) {
+                        while (chunk != null && pending.size() < window) {
+                            Chunk submitted = chunk;
+                            pending.addLast(pool.submit(() -> parseChunk(channel, submitted)));
+                            chunk = splitter.next();
+                        }
+                        pending.removeFirst().get().forEach(sink);
+                    }
+                } else {
+                    CompletionService<List<T>> completed = new ExecutorCompletionService<>(pool);
+                    int outstanding = 0;
+                    while (chunk != null || outstanding > 0) {
+                        while (chunk != null && outstanding < window) {
+                            Chunk submitted = chunk;
+                            completed.submit(() -> parseChunk(channel, submitted));
+                            outstanding++;
+                            chunk = splitter.next();
+                        }
+                        completed.take().get().forEach(sink);
+                        outstanding--;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("CSV parsing interrupted: " + filePath);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("CSV parsing failed: " + filePath, cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /** Parses the file on {@code threads} cores into a list, in file order. */
+    public List<T> parseParallel(int threads) throws IOException {
+        List<T> records = new ArrayList<>();
+        parseParallel(threads, true, records::add);
+        return records;
+    }
+
+    /**
+     * Cuts the file into chunks of about {@link #CHUNK_BYTES}, each ending
+     * on a line break (LF, CRLF or lone CR) outside quotes. Quotes and line
+     * breaks are tracked the way {@link CsvScanner} reads them, so both agree
+     * on where records end and how lines are numbered. This is one pass over
+     * the bytes, far cheaper than parsing them.
+     */
+    private final class ChunkSplitter {
+        private final FileChannel channel;
+        private final long size;
+        private final byte[] bytes = new byte[SPLIT_BUFFER_BYTES];
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long bytesStart;
+        private int length;
+        private int index;
+        private long start;
+        private long line = 1;
+        private boolean inQuotes;
+        private boolean closedQuote;
+        private boolean fieldStart = true;
+        private boolean afterCr;
+
+        ChunkSplitter(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /** The next chunk, or {@code null} once the file is covered. */
+        Chunk next() throws IOException {
+            long chunkLine = line;
+            while (true) {
+                if (index == length && !fill()) {
+                    if (start == size) {
+                        return null;
+                    }
+                    Chunk last = new Chunk(start, size - start, chunkLine, start == 0);
+                    start = size;
+                    return last;
+                }
+                // State is kept in locals through the hot loop and written back after
+                byte[] bytes = this.bytes;
+                int end = length;
+                boolean quoted = inQuotes;
+                boolean closed = closedQuote;
+                boolean atFieldStart = fieldStart;
+                boolean cr = afterCr;
+                long lines = line;
+                int i = index;
+                long cut = -1;
+                while (i < end) {
+                    byte b = bytes[i++];
+                    // A line break is LF, CRLF or a lone CR; CRLF counts once, at the CR
+                    boolean newLine = b == '\r' || (b == '\n' && !cr);
+                    cr = b == '\r';
+                    if (quoted) {
+                        if (b == '"') {
+                            quoted = false;
+                            closed = true;
+                        } else if (newLine) {
+                            lines++;
+                        }
+                    } else if (b == '"') {
+                        // Opens at the start of a field, or right after a closing quote as an escaped one
+                        quoted = atFieldStart || closed;
+                        closed = false;
+                        atFieldStart = false;
+                    } else {
+                        closed = false;
+                        boolean recordEnd = b == '\n' || b == '\r';
+                        atFieldStart = b == delimiter || recordEnd;
+                        if (recordEnd) {
+                            if (newLine) {
+                                lines++;
+                            }
+                            // Never between the CR and LF of a CRLF; a CR at the end of the buffer waits
+                            boolean complete = b == '\n' || (i < end && bytes[i] != '\n');
+                            if (complete && bytesStart + i - start >= CHUNK_BYTES) {
+                                cut = bytesStart + i;
+                                break;
+                            }
+                        }
+                    }
+                }
+                index = i;
+                inQuotes = quoted;
+                closedQuote = closed;
+                fieldStart = atFieldStart;
+                afterCr = cr;
+                line = lines;
+                if (cut >= 0) {
+                    Chunk chunk = new Chunk(start, cut - start, chunkLine, start == 0);
+                    start = cut;
+                    return chunk;
+                }
+            }
+        }
+
+        // Bulk copies out of the mapping scan far faster than a get per byte
+        private boolean fill() throws IOException {
+            if (window == null || !window.hasRemaining()) {
+                long next = window == null ? 0 : windowStart + window.limit();
+                if (next >= size) {
+                    return false;
+                }
+                windowStart = next;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(SPLIT_WINDOW_BYTES, size - windowStart));
+            }
+            bytesStart = windowStart + window.position();
+            length = Math.min(bytes.length, window.remaining());
+            window.get(bytes, 0, length);
+            index = 0;
+            return true;
+        }
+    }
+
+    private List<T> parseChunk(FileChannel channel, Chunk chunk) throws IOException {
+        if (chunk.length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("CSV record over 2 GB at line " + chunk.firstLine + ": " + filePath);
+        }
+        // Decoded through the scanner's small buffer, which stays in cache; chunks end on
+        // a line break, so no UTF-8 sequence is split
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.length);
+        Reader reader = new InputStreamReader(new MappedInputStream(bytes), StandardCharsets.UTF_8);
+        CsvScanner scanner = new CsvScanner(reader, delimiter, chunk.firstLine);
+        CsvRow row = new CsvRow();
+        if (chunk.first && hasHeader) {
+            scanner.next(row);
+        }
+        List<T> records = new ArrayList<>();
+        while (scanner.next(row)) {
+            records.add(mapper.map(row));
+        }
+        return records;
+    }
+
+    private CsvScanner open() throws IOException {
+        Reader reader = new InputStreamReader(Files.newInputStream(filePath), StandardCharsets.UTF_8);
+        CsvScanner scanner = new CsvScanner(reader, delimiter);
         if (hasHeader) {
-            lines = lines.skip(1);
+            try {
+                scanner.next(new CsvRow());
+            } catch (IOException | RuntimeException e) {
+                scanner.close();
+                throw e;
+            }
         }
-        return lines.map(line -> line.split(delimiter))
-                   .map(mapper);
+        return scanner;
     }
 
     public void write(Stream<T> data, Function<T, String[]> extractor, String[] headers) throws IOException {
         try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
             if (headers != null && headers.length > 0) {
-                writer.write(String.join(delimiter, headers));
-                writer.newLine();
+                writeRecord(writer, headers);
             }
 
             data.map(extractor)
-                .map(fields -> String.join(delimiter, fields))
-                .forEach(line -> {
+                .forEach(fields -> {
                     try {
-                        writer.write(line);
-                        writer.newLine();
+                        writeRecord(writer, fields);
                     } catch (IOException e) {
                         throw new UncheckedIOException(e);
                     }
@@ -47,13 +335,96 @@ public class CsvParser<T> {
         }
     }
 
+    private void writeRecord(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(delimiter);
+            }
+            writeField(writer, fields[i] == null ? "" : fields[i]);
+        }
+        writer.write(System.lineSeparator());
+    }
+
+    // Quoted only when it has to be, so plain files stay as they were
+    private void writeField(Writer writer, String field) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
     public static <T> Builder<T> builder(Path filePath) {
         return new Builder<>(filePath);
     }
 
+    /** Maps a record to a value; the row is reused, so copy out what is kept. */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(CsvRow row);
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(CsvRow row);
+    }
+
+    private static final class Chunk {
+        final long start;
+        final long length;
+        final long firstLine;
+        final boolean first;
+
+        Chunk(long start, long length, long firstLine, boolean first) {
+            this.start = start;
+            this.length = length;
+            this.firstLine = firstLine;
+            this.first = first;
+        }
+    }
+
+    private static final class MappedInputStream extends InputStream {
+        private final MappedByteBuffer bytes;
+
+        MappedInputStream(MappedByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, bytes.remaining());
+            bytes.get(target, offset, count);
+            return count;
+        }
+    }
+
     public static class Builder<T> {
         private final Path filePath;
-        private Function<String[], T> mapper;
+        private RowMapper<T> mapper;
         private String delimiter = ",";
         private boolean hasHeader = true;
 
@@ -62,6 +433,11 @@ public class CsvParser<T> {
         }
 
         public Builder<T> withMapper(Function<String[], T> mapper) {
+            this.mapper = row -> mapper.apply(row.toArray());
+            return this;
+        }
+
+        public Builder<T> withRowMapper(RowMapper<T> mapper) {
             this.mapper = mapper;
             return this;
         }
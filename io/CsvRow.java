@@ -0,0 +1,176 @@
+package edu.ccrm.io;
+
+/**
+ * One CSV record as handed to a {@link CsvParser.RowMapper}. The row and the
+ * field views it returns are reused for the next record, so a mapper must
+ * copy out whatever it keeps: {@link #getString} for text, {@link #getInt}
+ * for numbers without a String in between.
+ */
+public final class CsvRow {
+    private char[] chars = new char[256];
+    private int length;
+    private int[] ends = new int[16];
+    private int fields;
+    private Field[] views = new Field[0];
+    private long lineNumber;
+
+    /** Number of fields, trailing empty ones included. */
+    public int size() {
+        return fields;
+    }
+
+    /** Line of the file the record starts on, from 1. */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /** View of a field, unquoted; valid until the parser moves to the next record. */
+    public CharSequence get(int index) {
+        checkIndex(index);
+        if (views.length <= index) {
+            Field[] grown = new Field[Math.max(index + 1, views.length * 2)];
+            System.arraycopy(views, 0, grown, 0, views.length);
+            for (int i = views.length; i < grown.length; i++) {
+                grown[i] = new Field(i);
+            }
+            views = grown;
+        }
+        return views[index];
+    }
+
+    public String getString(int index) {
+        checkIndex(index);
+        return new String(chars, start(index), ends[index] - start(index));
+    }
+
+    /** Parses a field as a decimal int, ignoring surrounding whitespace. */
+    public int getInt(int index) {
+        checkIndex(index);
+        int from = start(index);
+        int to = ends[index];
+        while (from < to && Character.isWhitespace(chars[from])) {
+            from++;
+        }
+        while (to > from && Character.isWhitespace(chars[to - 1])) {
+            to--;
+        }
+        boolean negative = from < to && chars[from] == '-';
+        int digit = negative || (from < to && chars[from] == '+') ? from + 1 : from;
+        if (digit == to || to - digit > 10) {
+            throw numberFormat(index);
+        }
+        long value = 0;
+        for (int i = digit; i < to; i++) {
+            int d = chars[i] - '0';
+            if (d < 0 || d > 9) {
+                throw numberFormat(index);
+            }
+            value = value * 10 + d;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw numberFormat(index);
+        }
+        return (int) value;
+    }
+
+    /** Copies every field out, for mappers written against {@code String[]}. */
+    public String[] toArray() {
+        String[] values = new String[fields];
+        for (int i = 0; i < fields; i++) {
+            values[i] = getString(i);
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", toArray());
+    }
+
+    void reset(long lineNumber) {
+        this.lineNumber = lineNumber;
+        length = 0;
+        fields = 0;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+        }
+        chars[length++] = c;
+    }
+
+    void append(char[] source, int offset, int count) {
+        if (length + count > chars.length) {
+            char[] grown = new char[Math.max(chars.length * 2, length + count)];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+        }
+        System.arraycopy(source, offset, chars, length, count);
+        length += count;
+    }
+
+    void endField() {
+        if (fields == ends.length) {
+            int[] grown = new int[ends.length * 2];
+            System.arraycopy(ends, 0, grown, 0, fields);
+            ends = grown;
+        }
+        ends[fields++] = length;
+    }
+
+    // Characters taken by the field being scanned so far
+    int currentFieldLength() {
+        return length - (fields == 0 ? 0 : ends[fields - 1]);
+    }
+
+    private int start(int index) {
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fields) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fields + " at line " + lineNumber);
+        }
+    }
+
+    private NumberFormatException numberFormat(int index) {
+        return new NumberFormatException("Not an int at line " + lineNumber + ", field " + index
+            + ": \"" + getString(index) + "\"");
+    }
+
+    private final class Field implements CharSequence {
+        private final int index;
+
+        Field(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            checkIndex(index);
+            return ends[index] - start(index);
+        }
+
+        @Override
+        public char charAt(int position) {
+            if (position < 0 || position >= length()) {
+                throw new IndexOutOfBoundsException(position);
+            }
+            return chars[start(index) + position];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return getString(index);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+package edu.ccrm.io;
+
+import java.io.*;
+
+/**
+ * RFC 4180 record scanner over a {@link Reader}. Characters go through one
+ * reused buffer into one reused {@link CsvRow}, so scanning allocates
+ * nothing per record once the buffers have grown to the widest row.
+ *
+ * <p>Quoted fields may hold the delimiter, line breaks and doubled quotes.
+ * Records end at LF, CRLF or a lone CR. The scanner is lenient where the
+ * RFC is strict: a quote inside an unquoted field, or text after a closing
+ * quote, is kept as it is. Empty lines are skipped. Only a quoted field
+ * left open at the end of input is an error.
+ */
+final class CsvScanner implements Closeable {
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private int position;
+    private int limit;
+    private long lineNumber;
+
+    CsvScanner(Reader reader, char delimiter) {
+        this(reader, delimiter, 1);
+    }
+
+    /** Scans part of a file, numbering lines from {@code firstLine}. */
+    CsvScanner(Reader reader, char delimiter, long firstLine) {
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Invalid CSV delimiter: " + delimiter);
+        }
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.lineNumber = firstLine;
+    }
+
+    /** Scans the next non-empty record into {@code row}; false at the end of input. */
+    boolean next(CsvRow row) throws IOException {
+        while (true) {
+            row.reset(lineNumber);
+            int outcome = scanRecord(row);
+            if (outcome < 0) {
+                return false;
+            }
+            // A line with nothing on it, not even quotes, is no record
+            if (outcome > 0 || row.size() > 1 || row.get(0).length() > 0) {
+                return true;
+            }
+        }
+    }
+
+    // -1 at end of input, 1 if the record used quotes, 0 otherwise
+    private int scanRecord(CsvRow row) throws IOException {
+        boolean started = false;
+        boolean quoted = false;
+        boolean inQuotes = false;
+        // Inside quotes, so a CRLF there counts as one line
+        boolean afterCr = false;
+        while (true) {
+            if (position == limit && !fill()) {
+                if (inQuotes) {
+                    throw new IllegalStateException(
+                        "Unterminated quoted field in record starting at line " + row.getLineNumber());
+                }
+                if (!started) {
+                    return -1;
+                }
+                row.endField();
+                return quoted ? 1 : 0;
+            }
+            started = true;
+            char c = buffer[position++];
+            if (inQuotes) {
+                if (c == '"') {
+                    if (position == limit) {
+                        fill();
+                    }
+                    if (position < limit && buffer[position] == '"') {
+                        row.append('"');
+                        position++;
+                    } else {
+                        inQuotes = false;
+                    }
+                    afterCr = false;
+                } else {
+                    if (c == '\r' || (c == '\n' && !afterCr)) {
+                        lineNumber++;
+                    }
+                    afterCr = c == '\r';
+                    row.append(c);
+                }
+            } else if (c == delimiter) {
+                row.endField();
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    if (position == limit) {
+                        fill();
+                    }
+                    if (position < limit && buffer[position] == '\n') {
+                        position++;
+                    }
+                }
+                lineNumber++;
+                row.endField();
+                return quoted ? 1 : 0;
+            } else if (c == '"' && row.currentFieldLength() == 0) {
+                inQuotes = true;
+                quoted = true;
+            } else {
+                // Copy the run of plain characters up to the next one that matters in one go
+                int from = position - 1;
+                while (position < limit && !isSpecial(buffer[position])) {
+                    position++;
+                }
+                row.append(buffer, from, position - from);
+            }
+        }
+    }
+
+    private boolean isSpecial(char c) {
+        return c == delimiter || c == '"' || c == '\n' || c == '\r';
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            position = limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
\ No newline at end of file
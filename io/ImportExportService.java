@@ -1,10 +1,12 @@
 package edu.ccrm.io;
 
+import edu.ccrm.config.AppConfig;
 import edu.ccrm.domain.Course;
 import edu.ccrm.domain.Student;
 import edu.ccrm.domain.Grade;
 import edu.ccrm.domain.Semester;
 import edu.ccrm.exception.EntityNotFoundException;
+import edu.ccrm.service.EnrollmentSnapshot;
 import java.io.*;
 import java.nio.file.*;
 import java.time.LocalDateTime;
@@ -15,141 +17,165 @@ import java.util.stream.Stream;
 
 public class ImportExportService {
     private static final String CSV_DELIMITER = ",";
+    private static final String[] GRADE_HEADERS = {"studentId", "courseCode", "grade", "points"};
     private final Path dataDirectory;
     private final DateTimeFormatter timestampFormat;
+    private final int importThreads;
 
     public ImportExportService(Path dataDirectory) {
+        this(dataDirectory, AppConfig.getInstance().getImportThreads());
+    }
+
+    public ImportExportService(Path dataDirectory, int importThreads) {
+        if (importThreads <= 0) {
+            throw new IllegalArgumentException("Import threads must be positive");
+        }
         this.dataDirectory = dataDirectory;
         this.timestampFormat = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+        this.importThreads = importThreads;
         createDirectoryIfNotExists(dataDirectory);
     }
 
     // Import methods
     public List<Student> importStudents(Path filePath) throws IOException {
+        try (Stream<Student> students = studentParser(filePath).parse()) {
+            return students.filter(Objects::nonNull).collect(Collectors.toList());
+        }
+    }
+
+    public List<Course> importCourses(Path filePath) throws IOException {
+        try (Stream<Course> courses = courseParser(filePath).parse()) {
+            return courses.filter(Objects::nonNull).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Imports students with the file parsed on several cores. With
+     * {@code ordered} false the list comes in chunk completion order, which
+     * saves holding finished chunks back for slower ones.
+     */
+    public List<Student> importStudentsParallel(Path filePath, boolean ordered) throws IOException {
         List<Student> students = new ArrayList<>();
-        try (Stream<String> lines = Files.lines(filePath)) {
-            Iterator<String> iterator = lines.iterator();
-            if (iterator.hasNext()) {
-                iterator.next(); // Skip header
+        studentParser(filePath).parseParallel(importThreads, ordered, student -> {
+            if (student != null) {
+                students.add(student);
             }
-            while (iterator.hasNext()) {
-                String[] data = iterator.next().split(CSV_DELIMITER);
-                if (data.length >= 5) {
-                    Student student = new Student(
-                        data[0].trim(), // id
-                        data[2].trim() + " " + data[3].trim(), // fullName
-                        data[4].trim(), // email
-                        data[1].trim()  // regNo
-                    );
-                    students.add(student);
-                }
-            }
-        }
+        });
         return students;
     }
 
-    public List<Course> importCourses(Path filePath) throws IOException {
+    public List<Course> importCoursesParallel(Path filePath, boolean ordered) throws IOException {
         List<Course> courses = new ArrayList<>();
-        try (Stream<String> lines = Files.lines(filePath)) {
-            Iterator<String> iterator = lines.iterator();
-            if (iterator.hasNext()) {
-                iterator.next(); // Skip header
-            }
-            while (iterator.hasNext()) {
-                String[] data = iterator.next().split(CSV_DELIMITER);
-                if (data.length >= 6) {
-                    Course course = new Course.Builder(data[0].trim()) // code
-                        .title(data[1].trim())
-                        .credits(Integer.parseInt(data[2].trim()))
-                        .semester(Semester.valueOf(data[4].trim()))
-                        .department(data[5].trim())
-                        .build();
-                    courses.add(course);
-                }
+        courseParser(filePath).parseParallel(importThreads, ordered, course -> {
+            if (course != null) {
+                courses.add(course);
             }
-        }
+        });
         return courses;
     }
 
+    // Rows too short to be a student are skipped, so the mapper gives null for them
+    private CsvParser<Student> studentParser(Path filePath) {
+        return CsvParser.<Student>builder(filePath)
+            .withDelimiter(CSV_DELIMITER)
+            .withRowMapper(row -> row.size() < 5 ? null : new Student(
+                row.getString(0).trim(), // id
+                row.getString(2).trim() + " " + row.getString(3).trim(), // fullName
+                row.getString(4).trim(), // email
+                row.getString(1).trim()  // regNo
+            ))
+            .build();
+    }
+
+    private CsvParser<Course> courseParser(Path filePath) {
+        return CsvParser.<Course>builder(filePath)
+            .withDelimiter(CSV_DELIMITER)
+            .withRowMapper(row -> row.size() < 6 ? null : new Course.Builder(row.getString(0).trim()) // code
+                .title(row.getString(1).trim())
+                .credits(row.getInt(2))
+                .semester(Semester.valueOf(row.getString(4).trim()))
+                .department(row.getString(5).trim())
+                .build())
+            .build();
+    }
+
     // Export methods
     public void exportStudents(List<Student> students, Path filePath) throws IOException {
-        List<String> lines = new ArrayList<>();
-        lines.add("id,regNo,firstName,lastName,email,status");
-        
-        for (Student student : students) {
-            String[] names = student.getFullName().split(" ", 2);
-            String firstName = names[0];
-            String lastName = names.length > 1 ? names[1] : "";
-            
-            lines.add(String.format("%s,%s,%s,%s,%s,%s",
-                student.getId(),
-                student.getRegNo(),
-                firstName,
-                lastName,
-                student.getEmail(),
-                student.isActive() ? "ACTIVE" : "INACTIVE"
-            ));
-        }
-        
-        Files.write(filePath, lines);
+        writeCsv(filePath, new String[] {"id", "regNo", "firstName", "lastName", "email", "status"},
+            students.stream().map(student -> {
+                String[] names = student.getFullName().split(" ", 2);
+                String firstName = names[0];
+                String lastName = names.length > 1 ? names[1] : "";
+                return new String[] {
+                    student.getId(),
+                    student.getRegNo(),
+                    firstName,
+                    lastName,
+                    String.valueOf(student.getEmail()),
+                    student.isActive() ? "ACTIVE" : "INACTIVE"
+                };
+            }));
     }
 
     public void exportCourses(List<Course> courses, Path filePath) throws IOException {
-        List<String> lines = new ArrayList<>();
-        lines.add("code,title,credits,instructor,semester,department");
-        
-        for (Course course : courses) {
-            lines.add(String.format("%s,%s,%d,%s,%s,%s",
+        writeCsv(filePath, new String[] {"code", "title", "credits", "instructor", "semester", "department"},
+            courses.stream().map(course -> new String[] {
                 course.getCode(),
                 course.getTitle(),
-                course.getCredits(),
+                String.valueOf(course.getCredits()),
                 course.getInstructor() != null ? course.getInstructor().getFullName() : "TBD",
-                course.getSemester(),
-                course.getDepartment()
-            ));
-        }
-        
-        Files.write(filePath, lines);
+                // Constant name, which is what importCourses reads back
+                course.getSemester() != null ? course.getSemester().name() : "",
+                String.valueOf(course.getDepartment())
+            }));
     }
 
     public void exportEnrollments(Map<Student, List<Course>> enrollments, Path filePath) throws IOException {
-        List<String> lines = new ArrayList<>();
-        lines.add("studentId,regNo,courseCode,semester");
-        
-        for (Map.Entry<Student, List<Course>> entry : enrollments.entrySet()) {
-            Student student = entry.getKey();
-            for (Course course : entry.getValue()) {
-                lines.add(String.format("%s,%s,%s,%s",
+        writeCsv(filePath, new String[] {"studentId", "regNo", "courseCode", "semester"},
+            enrollments.entrySet().stream().flatMap(entry -> {
+                Student student = entry.getKey();
+                return entry.getValue().stream().map(course -> new String[] {
                     student.getId(),
                     student.getRegNo(),
                     course.getCode(),
-                    course.getSemester()
-                ));
-            }
-        }
-        
-        Files.write(filePath, lines);
+                    String.valueOf(course.getSemester())
+                });
+            }));
     }
 
     public void exportGrades(Map<String, Map<String, Grade>> grades, Path filePath) throws IOException {
-        List<String> lines = new ArrayList<>();
-        lines.add("studentId,courseCode,grade,points");
-        
-        for (Map.Entry<String, Map<String, Grade>> studentGrades : grades.entrySet()) {
-            String studentId = studentGrades.getKey();
-            for (Map.Entry<String, Grade> courseGrade : studentGrades.getValue().entrySet()) {
-                String courseCode = courseGrade.getKey();
-                Grade grade = courseGrade.getValue();
-                lines.add(String.format("%s,%s,%s,%.1f",
-                    studentId,
-                    courseCode,
-                    grade.name(),
-                    grade.getPoints()
-                ));
+        writeCsv(filePath, GRADE_HEADERS,
+            grades.entrySet().stream().flatMap(studentGrades -> studentGrades.getValue().entrySet().stream()
+                .map(courseGrade -> gradeFields(studentGrades.getKey(), courseGrade.getKey(), courseGrade.getValue()))));
+    }
+
+    /** Exports every grade in a snapshot, so the file reflects one point in time. */
+    public void exportGrades(EnrollmentSnapshot snapshot, Path filePath) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        snapshot.forEachEnrollment((studentId, courseCode, grade) -> {
+            if (grade != null) {
+                rows.add(gradeFields(studentId, courseCode, grade));
             }
+        });
+        writeCsv(filePath, GRADE_HEADERS, rows.stream());
+    }
+
+    private static String[] gradeFields(String studentId, String courseCode, Grade grade) {
+        return new String[] {studentId, courseCode, grade.name(), String.format("%.1f", grade.getPoints())};
+    }
+
+    // Through the CSV writer, so a field holding the delimiter, a quote or a line break is
+    // quoted and the file reads back through the importers unchanged
+    private void writeCsv(Path filePath, String[] headers, Stream<String[]> rows) throws IOException {
+        CsvParser<String[]> csv = CsvParser.<String[]>builder(filePath)
+            .withDelimiter(CSV_DELIMITER)
+            .withMapper(fields -> fields)
+            .build();
+        try {
+            csv.write(rows, fields -> fields, headers);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        
-        Files.write(filePath, lines);
     }
 
     private void createDirectoryIfNotExists(Path directory) {
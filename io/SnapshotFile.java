@@ -0,0 +1,476 @@
+package edu.ccrm.io;
+
+import edu.ccrm.config.AppConfig;
+import edu.ccrm.domain.*;
+import edu.ccrm.service.CourseService;
+import edu.ccrm.service.EnrollmentService;
+import edu.ccrm.service.EnrollmentSnapshot;
+import edu.ccrm.service.StudentService;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Full service state (students, courses, enrollments and grades) in one
+ * binary file, for a startup that reads instead of parses.
+ *
+ * <p>Layout, big-endian: magic, format version and the journal LSN the
+ * snapshot covers; a dictionary of every distinct string; the students and
+ * courses, with strings as dictionary indexes; the enrollments, as student
+ * and course positions plus a grade; and a CRC32 of everything before it.
+ * The file is written under a temporary name and moved into place, so the
+ * snapshot under the final name is always complete. It is loaded through a
+ * memory-mapped channel and checked against its CRC before anything is
+ * applied.
+ */
+public class SnapshotFile {
+    private static final long MAGIC = 0x43_43_52_4D_53_4E_41_50L; // "CCRMSNAP"
+    private static final int FORMAT_VERSION = 1;
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int NONE = -1;
+    // Bytes mapped at a time, so files past 2 GB load too
+    private static final long WINDOW_BYTES = 256L * 1024 * 1024;
+    private static final Grade[] GRADES = Grade.values();
+    private static final Semester[] SEMESTERS = Semester.values();
+    // Students applied per pool task
+    private static final int BATCH_SIZE = 1024;
+
+    private final Path file;
+    private final int threads;
+
+    public SnapshotFile(Path file) {
+        this(file, AppConfig.getInstance().getSnapshotLoadThreads());
+    }
+
+    public SnapshotFile(Path file, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        this.file = file;
+        this.threads = threads;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return Files.isRegularFile(file);
+    }
+
+    /**
+     * Writes the current state, tagged with a journal LSN whose changes it
+     * all includes. Students and courses are read live and enrollments from
+     * one {@link EnrollmentSnapshot}, without stopping writers, so changes
+     * made after {@code journalLsn} may be partly included too; replaying the
+     * journal after {@code journalLsn} brings such a snapshot up to date.
+     */
+    public void write(StudentService studentService, CourseService courseService,
+                      EnrollmentService enrollmentService, long journalLsn) {
+        List<Student> students = studentService.findAll();
+        List<Course> courses = courseService.findAll();
+        Map<String, Integer> studentPositions = new HashMap<>(students.size() * 2);
+        Map<String, Integer> coursePositions = new HashMap<>(courses.size() * 2);
+        students.forEach(student -> studentPositions.put(student.getId(), studentPositions.size()));
+        courses.forEach(course -> coursePositions.put(course.getCode(), coursePositions.size()));
+
+        // Encoded ahead of the dictionary they fill, reading each live field once
+        Dictionary strings = new Dictionary();
+        ByteArrayOutputStream entities = new ByteArrayOutputStream();
+        try {
+            DataOutputStream entityOut = new DataOutputStream(entities);
+            writeStudents(entityOut, students, strings);
+            writeCourses(entityOut, courses, strings);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode snapshot", e);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_EXTENSION);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeLong(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(journalLsn);
+                strings.writeTo(out);
+                entities.writeTo(out);
+                writeEnrollments(out, enrollmentService, studentPositions, coursePositions);
+                out.writeInt((int) checked.getChecksum().getValue());
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Loads the snapshot into the services, which should start out empty,
+     * and returns the journal LSN it covers; records after it still need
+     * replaying. Decoding runs on the calling thread while a pool applies
+     * the decoded students and enrollments, in batches, through the services.
+     * Each course's prerequisites were read at a different time, so cycle
+     * checks are left suspended; the journal's {@code attach()} resumes them
+     * once the records after the snapshot are replayed.
+     */
+    public long load(StudentService studentService, CourseService courseService,
+                     EnrollmentService enrollmentService) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedReader in = new MappedReader(channel);
+            in.verifyChecksum();
+            if (in.readLong() != MAGIC) {
+                throw new IllegalStateException("Not a snapshot file: " + file);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported snapshot version " + version + ": " + file);
+            }
+            long journalLsn = in.readLong();
+            String[] strings = readStrings(in);
+            List<Student> students = readStudents(in, strings);
+            List<Course> courses = readCourses(in, strings);
+
+            Batches batches = new Batches(pool, threads * 4);
+            for (int from = 0; from < students.size(); from += BATCH_SIZE) {
+                List<Student> batch = students.subList(from, Math.min(from + BATCH_SIZE, students.size()));
+                batches.submit(() -> batch.forEach(studentService::create));
+            }
+            courseService.suspendCycleChecks();
+            courses.forEach(courseService::create);
+            batches.awaitAll();
+
+            // Records come grouped by student; each group is restored in one call
+            List<String> batchIds = new ArrayList<>(BATCH_SIZE);
+            List<Map<String, Grade>> batchGrades = new ArrayList<>(BATCH_SIZE);
+            int current = NONE;
+            Map<String, Grade> grades = null;
+            for (int position = in.readInt(); position != NONE; position = in.readInt()) {
+                if (position != current) {
+                    if (batchIds.size() == BATCH_SIZE) {
+                        submitEnrollments(batches, enrollmentService, batchIds, batchGrades);
+                        batchIds = new ArrayList<>(BATCH_SIZE);
+                        batchGrades = new ArrayList<>(BATCH_SIZE);
+                    }
+                    current = position;
+                    grades = new LinkedHashMap<>();
+                    batchIds.add(students.get(position).getId());
+                    batchGrades.add(grades);
+                }
+                String courseCode = courses.get(in.readInt()).getCode();
+                int grade = in.readByte();
+                grades.put(courseCode, grade == NONE ? null : GRADES[grade]);
+            }
+            if (!batchIds.isEmpty()) {
+                submitEnrollments(batches, enrollmentService, batchIds, batchGrades);
+            }
+            batches.awaitAll();
+            return journalLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load snapshot: " + file, e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void submitEnrollments(Batches batches, EnrollmentService enrollmentService,
+                                          List<String> studentIds, List<Map<String, Grade>> grades) {
+        batches.submit(() -> {
+            for (int i = 0; i < studentIds.size(); i++) {
+                enrollmentService.restoreEnrollments(studentIds.get(i), grades.get(i));
+            }
+        });
+    }
+
+    private static void writeStudents(DataOutputStream out, List<Student> students, Dictionary strings)
+            throws IOException {
+        out.writeInt(students.size());
+        for (Student student : students) {
+            out.writeInt(strings.indexOf(student.getId()));
+            out.writeInt(strings.indexOf(student.getFullName()));
+            out.writeInt(strings.indexOf(student.getEmail()));
+            out.writeInt(strings.indexOf(student.getRegNo()));
+            out.writeBoolean(student.isActive());
+        }
+    }
+
+    private static void writeCourses(DataOutputStream out, List<Course> courses, Dictionary strings)
+            throws IOException {
+        out.writeInt(courses.size());
+        for (Course course : courses) {
+            out.writeInt(strings.indexOf(course.getCode()));
+            out.writeInt(strings.indexOf(course.getTitle()));
+            out.writeInt(course.getCredits());
+            Semester semester = course.getSemester();
+            out.writeByte(semester == null ? NONE : semester.ordinal());
+            out.writeInt(strings.indexOf(course.getDepartment()));
+            out.writeBoolean(course.isActive());
+            out.writeInt(course.getCapacity());
+            Person instructor = course.getInstructor();
+            if (instructor instanceof Instructor) {
+                out.writeInt(strings.indexOf(instructor.getId()));
+                out.writeInt(strings.indexOf(instructor.getFullName()));
+                out.writeInt(strings.indexOf(instructor.getEmail()));
+                out.writeInt(strings.indexOf(((Instructor) instructor).getDepartment()));
+            } else {
+                out.writeInt(NONE);
+            }
+            Set<String> prerequisites = course.getPrerequisites();
+            out.writeInt(prerequisites.size());
+            for (String prerequisite : prerequisites) {
+                out.writeInt(strings.indexOf(prerequisite));
+            }
+        }
+    }
+
+    // Streamed straight from the enrollment snapshot and ended by a NONE student position
+    private static void writeEnrollments(DataOutputStream out, EnrollmentService enrollmentService,
+                                         Map<String, Integer> studentPositions,
+                                         Map<String, Integer> coursePositions) throws IOException {
+        try (EnrollmentSnapshot snapshot = enrollmentService.openSnapshot()) {
+            snapshot.forEachEnrollment((studentId, courseCode, grade) -> {
+                Integer student = studentPositions.get(studentId);
+                Integer course = coursePositions.get(courseCode);
+                if (student == null || course == null) {
+                    return;
+                }
+                try {
+                    out.writeInt(student);
+                    out.writeInt(course);
+                    out.writeByte(grade == null ? NONE : grade.ordinal());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write snapshot enrollments", e);
+                }
+            });
+        }
+        out.writeInt(NONE);
+    }
+
+    private static String[] readStrings(MappedReader in) {
+        String[] strings = new String[in.readInt()];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.readInt();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.readBytes(scratch, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static List<Student> readStudents(MappedReader in, String[] strings) {
+        int count = in.readInt();
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Student student = new Student(string(strings, in.readInt()), string(strings, in.readInt()),
+                string(strings, in.readInt()), string(strings, in.readInt()));
+            student.setActive(in.readBoolean());
+            students.add(student);
+        }
+        return students;
+    }
+
+    private static List<Course> readCourses(MappedReader in, String[] strings) {
+        int count = in.readInt();
+        List<Course> courses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Course.Builder builder = new Course.Builder(string(strings, in.readInt()))
+                .title(string(strings, in.readInt()))
+                .credits(in.readInt());
+            int semester = in.readByte();
+            builder.semester(semester == NONE ? null : SEMESTERS[semester])
+                .department(string(strings, in.readInt()));
+            boolean active = in.readBoolean();
+            builder.capacity(in.readInt());
+            int instructorId = in.readInt();
+            if (instructorId != NONE) {
+                builder.instructor(new Instructor(string(strings, instructorId), string(strings, in.readInt()),
+                    string(strings, in.readInt()), string(strings, in.readInt())));
+            }
+            String[] prerequisites = new String[in.readInt()];
+            for (int p = 0; p < prerequisites.length; p++) {
+                prerequisites[p] = string(strings, in.readInt());
+            }
+            Course course = builder.prerequisites(prerequisites).build();
+            course.setActive(active);
+            courses.add(course);
+        }
+        return courses;
+    }
+
+    private static String string(String[] strings, int index) {
+        return index == NONE ? null : strings[index];
+    }
+
+    /** Distinct strings in first-seen order; {@code null} has no entry and is written as {@link #NONE}. */
+    private static final class Dictionary {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int indexOf(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            return indexes.computeIfAbsent(value, v -> {
+                strings.add(v);
+                return strings.size() - 1;
+            });
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(strings.size());
+            for (String value : strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /** Pool tasks with a cap on how many are queued, so decoding cannot run far ahead. */
+    private static final class Batches {
+        private final ExecutorService pool;
+        private final Semaphore permits;
+        private final List<Future<?>> pending = new ArrayList<>();
+
+        Batches(ExecutorService pool, int maxQueued) {
+            this.pool = pool;
+            this.permits = new Semaphore(maxQueued);
+        }
+
+        void submit(Runnable task) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Snapshot load interrupted", e);
+            }
+            pending.add(pool.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        void awaitAll() {
+            try {
+                for (Future<?> task : pending) {
+                    task.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Snapshot load interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Snapshot load failed", e.getCause());
+            } finally {
+                pending.clear();
+            }
+        }
+    }
+
+    /** Sequential reader over a file mapped one window at a time. */
+    private static final class MappedReader {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            if (size < Long.BYTES + Integer.BYTES) {
+                throw new IllegalStateException("Snapshot file is truncated");
+            }
+            map(0);
+        }
+
+        /** Checks the trailing CRC over the whole file, then rewinds. */
+        void verifyChecksum() throws IOException {
+            CRC32 crc = new CRC32();
+            long end = size - Integer.BYTES;
+            for (long start = 0; start < end; start += WINDOW_BYTES) {
+                MappedByteBuffer part = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(WINDOW_BYTES, end - start));
+                crc.update(part);
+            }
+            int expected = channel.map(FileChannel.MapMode.READ_ONLY, end, Integer.BYTES).getInt();
+            if ((int) crc.getValue() != expected) {
+                throw new IllegalStateException("Snapshot checksum mismatch");
+            }
+            map(0);
+        }
+
+        long readLong() {
+            ensure(Long.BYTES);
+            return window.getLong();
+        }
+
+        int readInt() {
+            ensure(Integer.BYTES);
+            return window.getInt();
+        }
+
+        byte readByte() {
+            ensure(1);
+            return window.get();
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        void readBytes(byte[] target, int length) {
+            int offset = 0;
+            while (offset < length) {
+                ensure(1);
+                int chunk = Math.min(length - offset, window.remaining());
+                window.get(target, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        // Remaps from the current position when fewer than n bytes are left in the window
+        private void ensure(int n) {
+            if (window.remaining() >= n) {
+                return;
+            }
+            long position = windowStart + window.position();
+            if (position + n > size) {
+                throw new IllegalStateException("Snapshot file is truncated");
+            }
+            try {
+                map(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map snapshot", e);
+            }
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_BYTES, size - start));
+        }
+    }
+}
\ No newline at end of file
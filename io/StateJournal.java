@@ -0,0 +1,467 @@
+package edu.ccrm.io;
+
+import edu.ccrm.config.AppConfig;
+import edu.ccrm.domain.*;
+import edu.ccrm.service.CourseService;
+import edu.ccrm.service.EnrollmentListener;
+import edu.ccrm.service.EnrollmentService;
+import edu.ccrm.service.EntityListener;
+import edu.ccrm.service.StudentService;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records every student, course, enrollment and grade change in a
+ * {@link WriteAheadLog} and rebuilds that state from the log on startup.
+ *
+ * <p>Students and courses are journaled as full images, so replaying the
+ * last image of each restores it; an update that leaves the image unchanged
+ * is not written again. Enrollment, drop and grade records are replayed
+ * through the enrollment service, which rebuilds GPAs, rosters and the
+ * derived indexes. Waitlists are not journaled.
+ *
+ * <p>Every record sets a value rather than changing it (a student's image,
+ * whether an enrollment exists, its grade), and one that no longer applies
+ * is skipped. Replaying records whose effect a checkpoint already holds is
+ * therefore harmless, which lets checkpoints be taken while writers run.
+ *
+ * <p>With sync-on-commit a change returns only once its record is on disk;
+ * otherwise records reach the disk within one sync interval. Records made
+ * during an enrollment service call are only appended while the call holds
+ * its locks; the call waits once, for the last of them, when it completes.
+ */
+public class StateJournal implements Closeable {
+    static final byte STUDENT_SAVED = 1;
+    static final byte STUDENT_DELETED = 2;
+    static final byte COURSE_SAVED = 3;
+    static final byte COURSE_DELETED = 4;
+    static final byte ENROLLED = 5;
+    static final byte UNENROLLED = 6;
+    static final byte GRADE_RECORDED = 7;
+
+    private final WriteAheadLog log;
+    private final StudentService studentService;
+    private final CourseService courseService;
+    private final EnrollmentService enrollmentService;
+    private final boolean syncOnCommit;
+    // Last image journaled per student id and course code
+    private final Map<String, byte[]> studentImages = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> courseImages = new ConcurrentHashMap<>();
+    // Highest LSN appended by this thread's enrollment call so far; unset outside one
+    private final ThreadLocal<long[]> deferred = new ThreadLocal<>();
+    private boolean attached;
+
+    private final EntityListener<Student, String> studentListener = new EntityListener<>() {
+        @Override
+        public void onCreated(Student student) {
+            saveStudent(student);
+        }
+
+        @Override
+        public void onUpdated(Student student) {
+            saveStudent(student);
+        }
+
+        @Override
+        public void onDeleted(String studentId) {
+            studentImages.remove(studentId);
+            commit(log.append(STUDENT_DELETED, encode(out -> out.writeUTF(studentId))));
+        }
+    };
+
+    private final EntityListener<Course, String> courseListener = new EntityListener<>() {
+        @Override
+        public void onCreated(Course course) {
+            saveCourse(course);
+        }
+
+        @Override
+        public void onUpdated(Course course) {
+            saveCourse(course);
+        }
+
+        @Override
+        public void onDeleted(String courseCode) {
+            courseImages.remove(courseCode);
+            commit(log.append(COURSE_DELETED, encode(out -> out.writeUTF(courseCode))));
+        }
+    };
+
+    private final EnrollmentListener enrollmentListener = new EnrollmentListener() {
+        @Override
+        public void onEnrolled(String studentId, String courseCode) {
+            deferCommits();
+            ensureSaved(studentId, courseCode);
+            commit(log.append(ENROLLED, encode(out -> {
+                out.writeUTF(studentId);
+                out.writeUTF(courseCode);
+            })));
+        }
+
+        @Override
+        public void onUnenrolled(String studentId, String courseCode, Grade grade) {
+            deferCommits();
+            commit(log.append(UNENROLLED, encode(out -> {
+                out.writeUTF(studentId);
+                out.writeUTF(courseCode);
+            })));
+        }
+
+        @Override
+        public void onGradeRecorded(String studentId, String courseCode, Grade previous, Grade grade) {
+            deferCommits();
+            commit(log.append(GRADE_RECORDED, encode(out -> {
+                out.writeUTF(studentId);
+                out.writeUTF(courseCode);
+                out.writeUTF(grade.name());
+            })));
+        }
+
+        @Override
+        public void onCallComplete() {
+            long[] pending = deferred.get();
+            if (pending != null) {
+                deferred.remove();
+                log.awaitDurable(pending[0]);
+            }
+        }
+    };
+
+    public StateJournal(WriteAheadLog log, StudentService studentService, CourseService courseService,
+                        EnrollmentService enrollmentService) {
+        this(log, studentService, courseService, enrollmentService,
+            AppConfig.getInstance().isJournalSyncOnCommit());
+    }
+
+    public StateJournal(WriteAheadLog log, StudentService studentService, CourseService courseService,
+                        EnrollmentService enrollmentService, boolean syncOnCommit) {
+        this.log = log;
+        this.studentService = studentService;
+        this.courseService = courseService;
+        this.enrollmentService = enrollmentService;
+        this.syncOnCommit = syncOnCommit;
+    }
+
+    /**
+     * Applies every journaled change to the services, which should start out
+     * empty; call before {@link #attach()}. Returns the number of records
+     * replayed. Prerequisite cycle checks stay suspended until
+     * {@link #attach()}: course images replayed one at a time can form a cycle
+     * that the catalogue never held at any single moment.
+     */
+    public long replay() {
+        return replay(0);
+    }
+
+    /**
+     * Applies the journaled changes after {@code lsn}, on top of a snapshot
+     * that covers everything up to it.
+     */
+    public long replay(long lsn) {
+        if (attached) {
+            throw new IllegalStateException("Replay must happen before the journal is attached");
+        }
+        courseService.suspendCycleChecks();
+        return log.replay(lsn + 1, this::apply);
+    }
+
+    /**
+     * Starts journaling changes made through the services, after checking
+     * once that the restored prerequisites form no cycle.
+     */
+    public synchronized void attach() {
+        if (attached) {
+            return;
+        }
+        courseService.resumeCycleChecks();
+        // Images already in the log need not be written again
+        studentService.findAll().forEach(student -> studentImages.put(student.getId(), studentImage(student)));
+        courseService.findAll().forEach(course -> courseImages.put(course.getCode(), courseImage(course)));
+        studentService.addEntityListener(studentListener);
+        courseService.addEntityListener(courseListener);
+        enrollmentService.addEnrollmentListener(enrollmentListener);
+        attached = true;
+    }
+
+    public synchronized void detach() {
+        studentService.removeEntityListener(studentListener);
+        courseService.removeEntityListener(courseListener);
+        enrollmentService.removeEnrollmentListener(enrollmentListener);
+        attached = false;
+    }
+
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    /** Stops journaling and closes the log once every buffered record is on disk. */
+    @Override
+    public void close() {
+        detach();
+        log.close();
+    }
+
+    // Per-entity monitor: images of one entity reach the log in the order they were taken
+    private void saveStudent(Student student) {
+        long lsn;
+        synchronized (student) {
+            byte[] image = studentImage(student);
+            byte[] previous = studentImages.put(student.getId(), image);
+            if (Arrays.equals(previous, image)) {
+                return;
+            }
+            lsn = log.append(STUDENT_SAVED, image);
+        }
+        commit(lsn);
+    }
+
+    private void saveCourse(Course course) {
+        long lsn;
+        synchronized (course) {
+            byte[] image = courseImage(course);
+            byte[] previous = courseImages.put(course.getCode(), image);
+            if (Arrays.equals(previous, image)) {
+                return;
+            }
+            lsn = log.append(COURSE_SAVED, image);
+        }
+        commit(lsn);
+    }
+
+    /**
+     * A new student or course is visible to other threads before its own
+     * listener journals it; an enrollment must not reach the log first.
+     */
+    private void ensureSaved(String studentId, String courseCode) {
+        if (!studentImages.containsKey(studentId)) {
+            studentService.findById(studentId).ifPresent(this::saveStudent);
+        }
+        if (!courseImages.containsKey(courseCode)) {
+            courseService.findById(courseCode).ifPresent(this::saveCourse);
+        }
+    }
+
+    private void commit(long lsn) {
+        if (!syncOnCommit) {
+            return;
+        }
+        long[] pending = deferred.get();
+        if (pending != null) {
+            pending[0] = Math.max(pending[0], lsn);
+        } else {
+            log.awaitDurable(lsn);
+        }
+    }
+
+    /**
+     * Holds back durability waits until the enrollment call completes, so
+     * they happen once and outside its locks. Saves the call makes through
+     * other services (the student's update, say) are deferred along with it.
+     */
+    private void deferCommits() {
+        if (syncOnCommit && deferred.get() == null) {
+            deferred.set(new long[1]);
+        }
+    }
+
+    private static byte[] studentImage(Student student) {
+        return encode(out -> {
+            out.writeUTF(student.getId());
+            out.writeUTF(student.getFullName());
+            writeNullable(out, student.getEmail());
+            out.writeUTF(student.getRegNo());
+            out.writeBoolean(student.isActive());
+        });
+    }
+
+    private static byte[] courseImage(Course course) {
+        return encode(out -> {
+            out.writeUTF(course.getCode());
+            out.writeUTF(course.getTitle());
+            out.writeInt(course.getCredits());
+            Person instructor = course.getInstructor();
+            out.writeBoolean(instructor instanceof Instructor);
+            if (instructor instanceof Instructor) {
+                out.writeUTF(instructor.getId());
+                out.writeUTF(instructor.getFullName());
+                writeNullable(out, instructor.getEmail());
+                writeNullable(out, ((Instructor) instructor).getDepartment());
+            }
+            writeNullable(out, course.getSemester() == null ? null : course.getSemester().name());
+            writeNullable(out, course.getDepartment());
+            out.writeBoolean(course.isActive());
+            out.writeInt(course.getCapacity());
+            Set<String> prerequisites = course.getPrerequisites();
+            out.writeInt(prerequisites.size());
+            for (String prerequisite : prerequisites) {
+                out.writeUTF(prerequisite);
+            }
+        });
+    }
+
+    private void apply(long lsn, byte type, DataInput in) throws IOException {
+        try {
+            switch (type) {
+                case STUDENT_SAVED:
+                    restoreStudent(in);
+                    break;
+                case STUDENT_DELETED: {
+                    String studentId = in.readUTF();
+                    if (studentService.exists(studentId)) {
+                        studentService.delete(studentId);
+                    }
+                    break;
+                }
+                case COURSE_SAVED:
+                    restoreCourse(in);
+                    break;
+                case COURSE_DELETED: {
+                    String courseCode = in.readUTF();
+                    if (courseService.exists(courseCode)) {
+                        courseService.delete(courseCode);
+                    }
+                    break;
+                }
+                case ENROLLED: {
+                    String studentId = in.readUTF();
+                    String courseCode = in.readUTF();
+                    if (studentService.exists(studentId) && courseService.exists(courseCode)) {
+                        enrollmentService.restoreEnrollment(studentId, courseCode, null);
+                    }
+                    break;
+                }
+                case UNENROLLED: {
+                    String studentId = in.readUTF();
+                    String courseCode = in.readUTF();
+                    if (isEnrolled(studentId, courseCode)) {
+                        enrollmentService.unenrollStudent(studentId, courseCode);
+                    }
+                    break;
+                }
+                case GRADE_RECORDED: {
+                    String studentId = in.readUTF();
+                    String courseCode = in.readUTF();
+                    Grade grade = Grade.valueOf(in.readUTF());
+                    if (isEnrolled(studentId, courseCode)) {
+                        enrollmentService.recordGrade(studentId, courseCode, grade);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown journal record type: " + type);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Failed to replay journal record " + lsn, e);
+        }
+    }
+
+    private boolean isEnrolled(String studentId, String courseCode) {
+        return studentService.findById(studentId)
+            .map(student -> student.getEnrolledCourses().stream()
+                .anyMatch(course -> course.getCode().equals(courseCode)))
+            .orElse(false);
+    }
+
+    private void restoreStudent(DataInput in) throws IOException {
+        String id = in.readUTF();
+        String fullName = in.readUTF();
+        String email = readNullable(in);
+        String regNo = in.readUTF();
+        boolean active = in.readBoolean();
+
+        Student existing = studentService.findById(id).orElse(null);
+        if (existing != null && existing.getFullName().equals(fullName) && existing.getRegNo().equals(regNo)) {
+            existing.setEmail(email);
+            existing.setActive(active);
+            return;
+        }
+        Student student = new Student(id, fullName, email, regNo);
+        student.setActive(active);
+        if (existing == null) {
+            studentService.create(student);
+        } else {
+            studentService.update(student);
+        }
+    }
+
+    private void restoreCourse(DataInput in) throws IOException {
+        String code = in.readUTF();
+        String title = in.readUTF();
+        int credits = in.readInt();
+        Instructor instructor = null;
+        if (in.readBoolean()) {
+            instructor = new Instructor(in.readUTF(), in.readUTF(), readNullable(in), readNullable(in));
+        }
+        String semesterName = readNullable(in);
+        Semester semester = semesterName == null ? null : Semester.valueOf(semesterName);
+        String department = readNullable(in);
+        boolean active = in.readBoolean();
+        int capacity = in.readInt();
+        Set<String> prerequisites = new LinkedHashSet<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            prerequisites.add(in.readUTF());
+        }
+
+        Course course = courseService.findById(code).orElse(null);
+        if (course == null) {
+            course = new Course.Builder(code)
+                .title(title)
+                .credits(credits)
+                .instructor(instructor)
+                .semester(semester)
+                .department(department)
+                .capacity(capacity)
+                .prerequisites(prerequisites.toArray(new String[0]))
+                .build();
+            course.setActive(active);
+            courseService.create(course);
+            return;
+        }
+        // Setters, so enrollment totals and indexes follow the change
+        course.setTitle(title);
+        course.setCredits(credits);
+        Person current = course.getInstructor();
+        if (instructor == null ? current != null : current == null || !current.getId().equals(instructor.getId())) {
+            course.setInstructor(instructor);
+        }
+        course.setSemester(semester);
+        course.setDepartment(department);
+        course.setActive(active);
+        course.setCapacity(capacity);
+        for (String prerequisite : new ArrayList<>(course.getPrerequisites())) {
+            if (!prerequisites.contains(prerequisite)) {
+                course.removePrerequisite(prerequisite);
+            }
+        }
+        for (String prerequisite : prerequisites) {
+            course.addPrerequisite(prerequisite);
+        }
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            encoder.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode journal record", e);
+        }
+        return bytes.toByteArray();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,242 @@
+package edu.ccrm.io;
+
+import edu.ccrm.config.AppConfig;
+import edu.ccrm.domain.Student;
+import edu.ccrm.service.StudentService;
+import edu.ccrm.service.TranscriptService;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes one transcript file per student into an output directory.
+ * Transcripts are generated in parallel on a fixed pool, bypassing the
+ * transcript cache, while a semaphore caps how many files are being
+ * written at once. Each file is written to a
+ * temporary name and then moved into place, so a file under its final name
+ * is always complete; a resumed run skips those and redoes the rest.
+ */
+public class TranscriptExportJob {
+    private static final String EXTENSION = ".txt";
+    private static final String TEMP_EXTENSION = ".tmp";
+    // Students handed to a worker at a time; keeps task overhead low at 200k students
+    private static final int BATCH_SIZE = 256;
+
+    private final TranscriptService transcriptService;
+    private final StudentService studentService;
+    private final Path outputDirectory;
+    private final int threads;
+    private final Semaphore writePermits;
+
+    public TranscriptExportJob(TranscriptService transcriptService, StudentService studentService,
+                               Path outputDirectory) {
+        this(transcriptService, studentService, outputDirectory,
+            AppConfig.getInstance().getExportThreads(), AppConfig.getInstance().getExportConcurrentWrites());
+    }
+
+    public TranscriptExportJob(TranscriptService transcriptService, StudentService studentService,
+                               Path outputDirectory, int threads, int concurrentWrites) {
+        if (threads <= 0 || concurrentWrites <= 0) {
+            throw new IllegalArgumentException("Threads and concurrent writes must be positive");
+        }
+        this.transcriptService = transcriptService;
+        this.studentService = studentService;
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+        this.writePermits = new Semaphore(concurrentWrites);
+    }
+
+    /** Exports every student, overwriting earlier files. */
+    public Report exportAll() {
+        return export(student -> true, false);
+    }
+
+    /**
+     * Exports the students matching {@code filter}. With {@code resume}, a
+     * student whose file already exists is skipped, so an interrupted run
+     * can be picked up where it stopped.
+     */
+    public Report export(Predicate<Student> filter, boolean resume) {
+        createDirectoryIfNotExists(outputDirectory);
+        deleteTempFiles();
+
+        List<Student> students = studentService.findAll().stream()
+            .filter(filter)
+            .collect(Collectors.toList());
+        Progress progress = new Progress();
+        long start = System.nanoTime();
+        boolean interrupted = false;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> batches = new ArrayList<>();
+            for (int from = 0; from < students.size(); from += BATCH_SIZE) {
+                List<Student> batch = students.subList(from, Math.min(from + BATCH_SIZE, students.size()));
+                batches.add(pool.submit(() -> exportBatch(batch, resume, progress)));
+            }
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = true;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Transcript export failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new Report(students.size(), progress.written.get(), progress.skipped.get(),
+            new ArrayList<>(progress.failed), progress.firstFailure.get(), new TreeMap<>(progress.failuresByType),
+            progress.bytes.get(), Duration.ofNanos(System.nanoTime() - start), interrupted);
+    }
+
+    private void exportBatch(List<Student> batch, boolean resume, Progress progress) {
+        for (Student student : batch) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Path target = outputDirectory.resolve(fileName(student.getId()));
+            if (resume && Files.exists(target)) {
+                progress.skipped.incrementAndGet();
+                continue;
+            }
+            try {
+                byte[] content = transcriptService.generateTranscriptUncached(student.getId())
+                    .getBytes(StandardCharsets.UTF_8);
+                write(target, content);
+                progress.written.incrementAndGet();
+                progress.bytes.addAndGet(content.length);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | IOException e) {
+                progress.failed.add(student.getId());
+                progress.firstFailure.compareAndSet(null, e);
+                progress.failuresByType.merge(e.getClass().getName(), 1, Integer::sum);
+            }
+        }
+    }
+
+    private void write(Path target, byte[] content) throws IOException, InterruptedException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_EXTENSION);
+        writePermits.acquire();
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            writePermits.release();
+        }
+    }
+
+    // Leftovers from an interrupted run; never complete, so never kept
+    private void deleteTempFiles() {
+        try (Stream<Path> files = Files.list(outputDirectory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(TEMP_EXTENSION))
+                 .forEach(path -> {
+                     try {
+                         Files.deleteIfExists(path);
+                     } catch (IOException e) {
+                         throw new UncheckedIOException("Failed to delete: " + path, e);
+                     }
+                 });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list export directory", e);
+        }
+    }
+
+    // Student ids are user data: keep file names to a safe character set
+    private static String fileName(String studentId) {
+        return studentId.replaceAll("[^A-Za-z0-9._-]", "_") + EXTENSION;
+    }
+
+    private void createDirectoryIfNotExists(Path directory) {
+        try {
+            if (!Files.exists(directory)) {
+                Files.createDirectories(directory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create directory: " + directory, e);
+        }
+    }
+
+    private static final class Progress {
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        final Queue<String> failed = new ConcurrentLinkedQueue<>();
+        final AtomicReference<Exception> firstFailure = new AtomicReference<>();
+        final Map<String, Integer> failuresByType = new ConcurrentHashMap<>();
+    }
+
+    /** Outcome of one export run. */
+    public static final class Report {
+        private final int requested;
+        private final int written;
+        private final int skipped;
+        private final List<String> failedStudentIds;
+        private final Exception firstFailure;
+        private final Map<String, Integer> failuresByType;
+        private final long bytesWritten;
+        private final Duration elapsed;
+        private final boolean interrupted;
+
+        Report(int requested, int written, int skipped, List<String> failedStudentIds,
+               Exception firstFailure, Map<String, Integer> failuresByType,
+               long bytesWritten, Duration elapsed, boolean interrupted) {
+            this.requested = requested;
+            this.written = written;
+            this.skipped = skipped;
+            this.failedStudentIds = Collections.unmodifiableList(failedStudentIds);
+            this.firstFailure = firstFailure;
+            this.failuresByType = Collections.unmodifiableMap(failuresByType);
+            this.bytesWritten = bytesWritten;
+            this.elapsed = elapsed;
+            this.interrupted = interrupted;
+        }
+
+        public int getRequested() { return requested; }
+        public int getWritten() { return written; }
+        public int getSkipped() { return skipped; }
+        public List<String> getFailedStudentIds() { return failedStudentIds; }
+        /** Exception of the first failure recorded, or {@code null} if no student failed. */
+        public Exception getFirstFailure() { return firstFailure; }
+        /** Failed students per exception class name. */
+        public Map<String, Integer> getFailuresByType() { return failuresByType; }
+        public long getBytesWritten() { return bytesWritten; }
+        public Duration getElapsed() { return elapsed; }
+        /** True if the run stopped early; run again with resume to finish. */
+        public boolean isInterrupted() { return interrupted; }
+
+        public boolean isComplete() {
+            return !interrupted && written + skipped == requested;
+        }
+
+        public double getTranscriptsPerSecond() {
+            double seconds = elapsed.toNanos() / 1e9;
+            return seconds > 0 ? written / seconds : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            String summary = String.format("Exported %d of %d transcripts (%d skipped, %d failed%s), %d bytes in %d ms, %.0f/s",
+                written, requested, skipped, failedStudentIds.size(), interrupted ? ", interrupted" : "",
+                bytesWritten, elapsed.toMillis(), getTranscriptsPerSecond());
+            return firstFailure == null ? summary
+                : summary + String.format("; failures by type %s, first: %s", failuresByType, firstFailure);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,544 @@
+package edu.ccrm.io;
+
+import edu.ccrm.config.AppConfig;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of binary records, kept in segment files named after the
+ * sequence number (LSN) of their first record. A record is
+ * {@code [int length][int crc32][long lsn][byte type][payload]}, where the
+ * length and CRC cover everything after the CRC.
+ *
+ * <p>Appending only copies the record into a buffer. A single flusher thread
+ * writes the buffer out and fsyncs it, then wakes the writers waiting in
+ * {@link #awaitDurable}; every record appended meanwhile goes out with the
+ * next fsync (group commit). A lone waiting writer is synced at once; when
+ * several are waiting, the flusher first gives others up to one sync
+ * interval to join the same fsync.
+ *
+ * <p>Opening the log scans it and cuts off a torn or corrupt tail left by a
+ * crash, so the log always ends at its last complete record. An empty last
+ * segment is kept and written next: its name is the only record of where
+ * numbering continues once older segments have been truncated.
+ */
+public class WriteAheadLog implements Closeable {
+    /** Receives records in LSN order during {@link #replay}. */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(long lsn, byte type, DataInput payload) throws IOException;
+    }
+
+    private static final String PREFIX = "wal-";
+    private static final String EXTENSION = ".log";
+    // lsn + type
+    private static final int BODY_HEADER_BYTES = 9;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private final Path directory;
+    private final long syncIntervalNanos;
+    private final long segmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingReady = lock.newCondition();
+    private final Condition durableReady = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+    private final byte[] bodyHeader = new byte[BODY_HEADER_BYTES];
+    // Records appended but not yet handed to the flusher; swapped with spare on each flush
+    private RecordBuffer pending = new RecordBuffer();
+    private RecordBuffer spare = new RecordBuffer();
+    private long firstPendingLsn;
+    private long nextLsn;
+    private long durableLsn;
+    // Threads blocked in awaitDurable; more than one means the log is under load
+    private int durableWaiters;
+    private IOException failure;
+    private boolean closed;
+    // Set by truncation: the next write starts a new segment so the current one can go
+    private boolean rollRequested;
+
+    // Flusher thread only, once the constructor has started it
+    private FileChannel segment;
+    private long segmentSize;
+
+    private final Thread flusher;
+
+    public WriteAheadLog(Path directory) {
+        this(directory, 0);
+    }
+
+    /**
+     * Opens the log behind a checkpoint that covers every record up to
+     * {@code checkpointLsn}: new records are numbered after it even if the
+     * segments that held it are gone.
+     */
+    public WriteAheadLog(Path directory, long checkpointLsn) {
+        this(directory, AppConfig.getInstance().getJournalSyncIntervalMillis(),
+            AppConfig.getInstance().getJournalSegmentBytes(), checkpointLsn);
+    }
+
+    public WriteAheadLog(Path directory, long syncIntervalMillis, long segmentBytes) {
+        this(directory, syncIntervalMillis, segmentBytes, 0);
+    }
+
+    public WriteAheadLog(Path directory, long syncIntervalMillis, long segmentBytes, long checkpointLsn) {
+        if (syncIntervalMillis < 0 || segmentBytes <= 0) {
+            throw new IllegalArgumentException("Sync interval cannot be negative and segment size must be positive");
+        }
+        this.directory = directory;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            long lastLsn = recover();
+            if (checkpointLsn > lastLsn) {
+                // The log lost its tail past the checkpoint; every segment left is covered by it
+                closeSegment();
+                for (Path segment : listSegments()) {
+                    Files.delete(segment);
+                }
+                lastLsn = checkpointLsn;
+            }
+            this.durableLsn = lastLsn;
+        } catch (IOException e) {
+            closeSegment();
+            throw new UncheckedIOException("Failed to open journal: " + directory, e);
+        }
+        this.nextLsn = durableLsn + 1;
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** LSN of the last record appended, durable or not; 0 if the log is empty. */
+    public long getLastLsn() {
+        lock.lock();
+        try {
+            return nextLsn - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** LSN up to which every record is on disk. */
+    public long getDurableLsn() {
+        lock.lock();
+        try {
+            return durableLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Buffers one record and returns its LSN without waiting for the disk.
+     * Records are ordered by the order of these calls.
+     */
+    public long append(byte type, byte[] payload) {
+        if (payload.length > MAX_RECORD_BYTES - BODY_HEADER_BYTES) {
+            throw new IllegalArgumentException("Journal record too large: " + payload.length + " bytes");
+        }
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            long lsn = nextLsn++;
+            ByteBuffer.wrap(bodyHeader).putLong(lsn).put(type);
+            crc.reset();
+            crc.update(bodyHeader);
+            crc.update(payload);
+
+            boolean wasEmpty = pending.size() == 0;
+            if (wasEmpty) {
+                firstPendingLsn = lsn;
+            }
+            pending.writeInt(BODY_HEADER_BYTES + payload.length);
+            pending.writeInt((int) crc.getValue());
+            pending.write(bodyHeader, 0, BODY_HEADER_BYTES);
+            pending.write(payload, 0, payload.length);
+            // Later appends join the batch the flusher is already gathering
+            if (wasEmpty) {
+                pendingReady.signal();
+            }
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until the record with {@code lsn}, and so every record before it, is on disk. */
+    public void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            if (durableLsn >= lsn) {
+                return;
+            }
+            durableWaiters++;
+            try {
+                while (durableLsn < lsn) {
+                    if (failure != null) {
+                        throw new UncheckedIOException("Journal write failed", failure);
+                    }
+                    // The change is already applied in memory; only its durability is pending
+                    durableReady.awaitUninterruptibly();
+                }
+            } finally {
+                durableWaiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Waits until everything appended so far is on disk. */
+    public void sync() {
+        awaitDurable(getLastLsn());
+    }
+
+    /**
+     * Reads every record with an LSN of at least {@code fromLsn}, in order.
+     * Meant for startup, before anything is appended.
+     *
+     * @throws IllegalStateException if the log starts after {@code fromLsn},
+     *         so records the caller needs have been truncated
+     */
+    public long replay(long fromLsn, RecordHandler handler) {
+        long replayed = 0;
+        List<Path> segments = listSegments();
+        if (!segments.isEmpty() && firstLsn(segments.get(0)) > fromLsn) {
+            throw new IllegalStateException("Journal starts at LSN " + firstLsn(segments.get(0))
+                + ", records from LSN " + fromLsn + " are missing: " + directory);
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            // A segment ends where the next begins; skip those wholly before fromLsn
+            if (i + 1 < segments.size() && firstLsn(segments.get(i + 1)) <= fromLsn) {
+                continue;
+            }
+            Path path = segments.get(i);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                byte[] body;
+                while ((body = readRecord(in)) != null) {
+                    ByteBuffer header = ByteBuffer.wrap(body, 0, BODY_HEADER_BYTES);
+                    long lsn = header.getLong();
+                    byte type = header.get();
+                    if (lsn < fromLsn) {
+                        continue;
+                    }
+                    handler.handle(lsn, type, new DataInputStream(new ByteArrayInputStream(
+                        body, BODY_HEADER_BYTES, body.length - BODY_HEADER_BYTES)));
+                    replayed++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to replay journal segment: " + path, e);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Deletes the segments that hold only records up to {@code lsn}, once a
+     * checkpoint covers them. The segment being written is never deleted,
+     * but the next write starts a new one so it can go next time. Returns
+     * the number of segments deleted.
+     */
+    public int truncateThrough(long lsn) {
+        lock.lock();
+        try {
+            rollRequested = true;
+        } finally {
+            lock.unlock();
+        }
+        List<Path> segments = listSegments();
+        int deleted = 0;
+        // Oldest first; a segment ends where the next begins
+        for (int i = 0; i + 1 < segments.size() && firstLsn(segments.get(i + 1)) <= lsn + 1; i++) {
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete journal segment: " + segments.get(i), e);
+            }
+            deleted++;
+        }
+        return deleted;
+    }
+
+    public int getSegmentCount() {
+        return listSegments().size();
+    }
+
+    /** Bytes of all segments on disk. */
+    public long getSizeOnDisk() {
+        long size = 0;
+        for (Path segment : listSegments()) {
+            try {
+                size += Files.size(segment);
+            } catch (NoSuchFileException e) {
+                // Truncated meanwhile
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read journal segment size: " + segment, e);
+            }
+        }
+        return size;
+    }
+
+    /** Writes out whatever is buffered, waits for it to be durable and stops the flusher. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        closeSegment();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            RecordBuffer batch;
+            long firstLsn;
+            long lastLsn;
+            boolean roll;
+            lock.lock();
+            try {
+                while (pending.size() == 0 && !closed) {
+                    pendingReady.awaitUninterruptibly();
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                // Under load, give concurrent writers a moment to join this fsync;
+                // an idle log or a lone writer gets it at once
+                long remaining = durableWaiters > 1 ? syncIntervalNanos : 0;
+                while (remaining > 0 && !closed) {
+                    try {
+                        remaining = pendingReady.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                batch = pending;
+                pending = spare;
+                firstLsn = firstPendingLsn;
+                lastLsn = nextLsn - 1;
+                roll = rollRequested;
+                rollRequested = false;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                write(batch, firstLsn, roll);
+            } catch (IOException e) {
+                error = e;
+            }
+            batch.reset();
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableLsn = lastLsn;
+                }
+                spare = batch;
+                durableReady.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(RecordBuffer batch, long firstLsn, boolean roll) throws IOException {
+        if (segment == null || segmentSize >= segmentBytes || (roll && segmentSize > 0)) {
+            roll(firstLsn);
+        }
+        ByteBuffer buffer = batch.view();
+        int size = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+        segmentSize += size;
+    }
+
+    private void roll(long firstLsn) throws IOException {
+        closeSegment();
+        segment = FileChannel.open(segmentPath(firstLsn), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentSize = 0;
+        syncDirectory();
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close journal segment", e);
+        } finally {
+            segment = null;
+        }
+    }
+
+    // Makes a new segment's directory entry durable; not every platform can open a directory
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    /**
+     * Validates every segment and truncates a torn tail off the last one.
+     * An empty last segment is opened for the next write. Returns the last
+     * LSN.
+     */
+    private long recover() throws IOException {
+        List<Path> segments = listSegments();
+        long lastLsn = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            long expected = firstLsn(path);
+            if (lastLsn != 0 && expected != lastLsn + 1) {
+                throw new IllegalStateException("Journal segments are not contiguous at: " + path);
+            }
+            long validBytes = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                byte[] body;
+                while ((body = readRecord(in)) != null) {
+                    long lsn = ByteBuffer.wrap(body).getLong();
+                    if (lsn != expected) {
+                        break;
+                    }
+                    expected++;
+                    validBytes += 8 + body.length;
+                }
+            }
+            long size = Files.size(path);
+            if (validBytes < size) {
+                if (!last) {
+                    throw new IllegalStateException("Corrupt journal segment: " + path);
+                }
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                    channel.force(true);
+                }
+            }
+            lastLsn = expected - 1;
+            // Its name is the next LSN; appending to it keeps that on disk
+            if (last && validBytes == 0) {
+                segment = FileChannel.open(path, StandardOpenOption.WRITE);
+                segmentSize = 0;
+            }
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Next record's body (lsn, type and payload), or {@code null} at the end
+     * of the data: a clean end, a record cut short, or a CRC mismatch.
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        int length;
+        int checksum;
+        byte[] body;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+            if (length < BODY_HEADER_BYTES || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            body = new byte[length];
+            in.readFully(body);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 check = new CRC32();
+        check.update(body);
+        return (int) check.getValue() == checksum ? body : null;
+    }
+
+    private List<Path> listSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(WriteAheadLog::isSegment)
+                .sorted((a, b) -> Long.compare(firstLsn(a), firstLsn(b)))
+                .collect(Collectors.toCollection(ArrayList::new));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list journal directory: " + directory, e);
+        }
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, firstLsn, EXTENSION));
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(EXTENSION)
+            && name.substring(PREFIX.length(), name.length() - EXTENSION.length()).matches("\\d+");
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - EXTENSION.length()));
+    }
+
+    /** Growable byte buffer whose contents can be written without copying. */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(64 * 1024);
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
\ No newline at end of file
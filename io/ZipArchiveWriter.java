@@ -0,0 +1,213 @@
+package edu.ccrm.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a zip archive from entries whose content is already deflated, so
+ * compression can run on other threads than the one writing the file.
+ * {@link java.util.zip.ZipOutputStream} compresses inline and cannot take
+ * that.
+ *
+ * <p>Each entry is a local header without sizes, the raw deflate data and a
+ * data descriptor, followed at the end by the central directory. Zip64
+ * fields are used where sizes, offsets or the entry count need them, so
+ * the archive has no 4 GB limit.
+ */
+final class ZipArchiveWriter implements Closeable {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int END = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    // Sizes in the data descriptor, names in UTF-8
+    private static final int FLAGS = 0x0808;
+    private static final int DEFLATED = 8;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private final OutputStream out;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private long position;
+    private CentralEntry current;
+
+    ZipArchiveWriter(Path file) throws IOException {
+        this.out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+    }
+
+    void beginEntry(String name, long modifiedMillis) throws IOException {
+        if (current != null) {
+            throw new IllegalStateException("Entry not ended: " + current.name);
+        }
+        current = new CentralEntry(name.getBytes(StandardCharsets.UTF_8), position, dosTime(modifiedMillis));
+        writeInt(LOCAL_HEADER);
+        writeShort(VERSION);
+        writeShort(FLAGS);
+        writeShort(DEFLATED);
+        writeInt(current.dosTime);
+        writeInt(0); // CRC and sizes follow in the data descriptor
+        writeInt(0);
+        writeInt(0);
+        writeShort(current.name.length);
+        writeShort(0);
+        write(current.name, 0, current.name.length);
+    }
+
+    /** Appends raw deflate data to the current entry. */
+    void writeDeflated(byte[] data, int length) throws IOException {
+        write(data, 0, length);
+        current.compressedSize += length;
+    }
+
+    void endEntry(long crc, long size) throws IOException {
+        current.crc = crc;
+        current.size = size;
+        writeInt(DATA_DESCRIPTOR);
+        writeInt((int) crc);
+        // Readers switch to 8-byte sizes by the sizes themselves
+        if (current.needsZip64Sizes()) {
+            writeLong(current.compressedSize);
+            writeLong(size);
+        } else {
+            writeInt((int) current.compressedSize);
+            writeInt((int) size);
+        }
+        entries.add(current);
+        current = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (current == null) {
+                writeCentralDirectory();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long directoryOffset = position;
+        for (CentralEntry entry : entries) {
+            boolean zip64Sizes = entry.needsZip64Sizes();
+            boolean zip64Offset = entry.offset >= MAX_32;
+            int extraLength = (zip64Sizes ? 16 : 0) + (zip64Offset ? 8 : 0);
+            int version = extraLength > 0 ? VERSION_ZIP64 : VERSION;
+            writeInt(CENTRAL_HEADER);
+            writeShort(version);
+            writeShort(version);
+            writeShort(FLAGS);
+            writeShort(DEFLATED);
+            writeInt(entry.dosTime);
+            writeInt((int) entry.crc);
+            writeInt((int) (zip64Sizes ? MAX_32 : entry.compressedSize));
+            writeInt((int) (zip64Sizes ? MAX_32 : entry.size));
+            writeShort(entry.name.length);
+            writeShort(extraLength == 0 ? 0 : extraLength + 4);
+            writeShort(0); // comment
+            writeShort(0); // disk
+            writeShort(0); // internal attributes
+            writeInt(0);   // external attributes
+            writeInt((int) (zip64Offset ? MAX_32 : entry.offset));
+            write(entry.name, 0, entry.name.length);
+            if (extraLength > 0) {
+                writeShort(0x0001);
+                writeShort(extraLength);
+                if (zip64Sizes) {
+                    writeLong(entry.size);
+                    writeLong(entry.compressedSize);
+                }
+                if (zip64Offset) {
+                    writeLong(entry.offset);
+                }
+            }
+        }
+        long directorySize = position - directoryOffset;
+
+        if (entries.size() >= MAX_16 || directoryOffset >= MAX_32 || directorySize >= MAX_32) {
+            long zip64EndOffset = position;
+            writeInt(ZIP64_END);
+            writeLong(44);
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(directorySize);
+            writeLong(directoryOffset);
+            writeInt(ZIP64_LOCATOR);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+        writeInt(END);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), MAX_16));
+        writeShort(Math.min(entries.size(), MAX_16));
+        writeInt((int) Math.min(directorySize, MAX_32));
+        writeInt((int) Math.min(directoryOffset, MAX_32));
+        writeShort(0);
+    }
+
+    // MS-DOS date and time, two-second resolution, from 1980
+    private static int dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+            | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private void write(byte[] data, int offset, int length) throws IOException {
+        out.write(data, offset, length);
+        position += length;
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        position += 2;
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value & MAX_16);
+        writeShort(value >>> 16);
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+
+    private static final class CentralEntry {
+        final byte[] name;
+        final long offset;
+        final int dosTime;
+        long compressedSize;
+        long size;
+        long crc;
+
+        CentralEntry(byte[] name, long offset, int dosTime) {
+            this.name = name;
+            this.offset = offset;
+            this.dosTime = dosTime;
+        }
+
+        boolean needsZip64Sizes() {
+            return size >= MAX_32 || compressedSize >= MAX_32;
+        }
+    }
+}
\ No newline at end of file
@@ -17,6 +17,13 @@ public interface CourseService extends CrudService<Course, String> {
     
     // Search and filter methods using Stream API
     List<Course> searchByTitle(String titleQuery);
+    List<Course> suggestByTitle(String titleQuery, int limit);
     List<Course> filterByCredits(int minCredits, int maxCredits);
     List<Course> filterActiveByDepartmentAndSemester(String department, Semester semester);
+
+    // Recovery restores prerequisite sets from different points in time, which may form a
+    // cycle until the last one is applied. Suspending lets such edits through; resuming
+    // checks the whole catalogue once and throws IllegalStateException if a cycle remains
+    void suspendCycleChecks();
+    void resumeCycleChecks();
 }
\ No newline at end of file
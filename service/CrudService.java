@@ -13,4 +13,8 @@ public interface CrudService<T, ID> {
     T update(T entity);
     void delete(ID id);
     boolean exists(ID id);
+
+    // Notified after every create, update and delete
+    void addEntityListener(EntityListener<T, ID> listener);
+    void removeEntityListener(EntityListener<T, ID> listener);
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package edu.ccrm.service;
+
+/**
+ * Immutable outcome of validating or attempting one enrollment, with the
+ * numbers behind a rejection. Outcomes that carry no details, including
+ * {@link #ALLOWED}, are shared instances, so an accepted enrollment
+ * allocates nothing.
+ */
+public final class EnrollmentDecision {
+    public static final EnrollmentDecision ALLOWED = new EnrollmentDecision(EnrollmentStatus.ENROLLED, 0, 0, 0, null, 0);
+
+    private static final EnrollmentDecision[] SHARED = new EnrollmentDecision[EnrollmentStatus.values().length];
+
+    static {
+        for (EnrollmentStatus status : EnrollmentStatus.values()) {
+            SHARED[status.ordinal()] = status == EnrollmentStatus.ENROLLED
+                ? ALLOWED : new EnrollmentDecision(status, 0, 0, 0, null, 0);
+        }
+    }
+
+    private final EnrollmentStatus status;
+    private final int currentCredits;
+    private final int courseCredits;
+    private final int maxCredits;
+    private final String missingPrerequisite;
+    private final int capacity;
+
+    private EnrollmentDecision(EnrollmentStatus status, int currentCredits, int courseCredits,
+                               int maxCredits, String missingPrerequisite, int capacity) {
+        this.status = status;
+        this.currentCredits = currentCredits;
+        this.courseCredits = courseCredits;
+        this.maxCredits = maxCredits;
+        this.missingPrerequisite = missingPrerequisite;
+        this.capacity = capacity;
+    }
+
+    /** Shared decision for a status, without rejection details. */
+    public static EnrollmentDecision of(EnrollmentStatus status) {
+        return SHARED[status.ordinal()];
+    }
+
+    public static EnrollmentDecision creditLimitExceeded(int currentCredits, int courseCredits, int maxCredits) {
+        return new EnrollmentDecision(EnrollmentStatus.CREDIT_LIMIT_EXCEEDED,
+            currentCredits, courseCredits, maxCredits, null, 0);
+    }
+
+    public static EnrollmentDecision prerequisiteMissing(String missingPrerequisite) {
+        return new EnrollmentDecision(EnrollmentStatus.PREREQUISITES_NOT_MET, 0, 0, 0, missingPrerequisite, 0);
+    }
+
+    public static EnrollmentDecision courseFull(int capacity) {
+        return new EnrollmentDecision(EnrollmentStatus.COURSE_FULL, 0, 0, 0, null, capacity);
+    }
+
+    public EnrollmentStatus getStatus() { return status; }
+    public boolean isAllowed() { return status.isSuccess(); }
+
+    /** Semester credits already taken; set for {@code CREDIT_LIMIT_EXCEEDED}. */
+    public int getCurrentCredits() { return currentCredits; }
+    public int getCourseCredits() { return courseCredits; }
+    public int getMaxCredits() { return maxCredits; }
+
+    /** First prerequisite not yet passed; set for {@code PREREQUISITES_NOT_MET}. */
+    public String getMissingPrerequisite() { return missingPrerequisite; }
+
+    /** Seat limit of the course; set for {@code COURSE_FULL}. */
+    public int getCapacity() { return capacity; }
+
+    @Override
+    public String toString() {
+        switch (status) {
+            case CREDIT_LIMIT_EXCEEDED:
+                return String.format("%s (%d + %d > %d credits)", status, currentCredits, courseCredits, maxCredits);
+            case PREREQUISITES_NOT_MET:
+                return String.format("%s (missing %s)", status, missingPrerequisite);
+            case COURSE_FULL:
+                return String.format("%s (capacity %d)", status, capacity);
+            default:
+                return status.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package edu.ccrm.service;
+
+import edu.ccrm.domain.Grade;
+
+/**
+ * Callback for enrollment and grade changes made through an
+ * {@link EnrollmentService}. Called after the change is applied, on the
+ * thread that made it and while that student's changes are serialized, so
+ * a listener sees each student's events in order. Implementations should
+ * be quick and must not call back into the enrollment service.
+ */
+public interface EnrollmentListener {
+    default void onEnrolled(String studentId, String courseCode) {
+    }
+
+    /** {@code grade} is the grade the enrollment carried, or {@code null}. */
+    default void onUnenrolled(String studentId, String courseCode, Grade grade) {
+    }
+
+    /** {@code previous} is {@code null} if the enrollment was ungraded. */
+    default void onGradeRecorded(String studentId, String courseCode, Grade previous, Grade grade) {
+    }
+
+    /**
+     * Called at the end of every service call that may have fired the
+     * callbacks above, once the call holds no locks. A listener can finish
+     * here what it deferred from them, such as waiting for its records to be
+     * durable once per call rather than once per event.
+     */
+    default void onCallComplete() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package edu.ccrm.service;
+
+import java.util.Objects;
+
+/**
+ * A single (student, course) pair submitted for enrollment.
+ */
+public final class EnrollmentRequest {
+    private final String studentId;
+    private final String courseCode;
+
+    public EnrollmentRequest(String studentId, String courseCode) {
+        if (studentId == null || courseCode == null) {
+            throw new IllegalArgumentException("Student ID and course code cannot be null");
+        }
+        this.studentId = studentId;
+        this.courseCode = courseCode;
+    }
+
+    public static EnrollmentRequest of(String studentId, String courseCode) {
+        return new EnrollmentRequest(studentId, courseCode);
+    }
+
+    public String getStudentId() { return studentId; }
+    public String getCourseCode() { return courseCode; }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof EnrollmentRequest)) return false;
+        EnrollmentRequest other = (EnrollmentRequest) obj;
+        return studentId.equals(other.studentId) && courseCode.equals(other.courseCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(studentId, courseCode);
+    }
+
+    @Override
+    public String toString() {
+        return studentId + " -> " + courseCode;
+    }
+}
\ No newline at end of file
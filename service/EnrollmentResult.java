@@ -0,0 +1,28 @@
+package edu.ccrm.service;
+
+/**
+ * Per-item result of a batch enrollment.
+ */
+public final class EnrollmentResult {
+    private final EnrollmentRequest request;
+    private final EnrollmentDecision decision;
+
+    public EnrollmentResult(EnrollmentRequest request, EnrollmentStatus status) {
+        this(request, EnrollmentDecision.of(status));
+    }
+
+    public EnrollmentResult(EnrollmentRequest request, EnrollmentDecision decision) {
+        this.request = request;
+        this.decision = decision;
+    }
+
+    public EnrollmentRequest getRequest() { return request; }
+    public EnrollmentDecision getDecision() { return decision; }
+    public EnrollmentStatus getStatus() { return decision.getStatus(); }
+    public boolean isSuccess() { return decision.isAllowed(); }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s", request, decision);
+    }
+}
\ No newline at end of file
@@ -4,6 +4,7 @@ import edu.ccrm.domain.Course;
 import edu.ccrm.domain.Grade;
 import edu.ccrm.domain.Student;
 import edu.ccrm.domain.Semester;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -12,8 +13,24 @@ import java.util.Map;
  */
 public interface EnrollmentService {
     void enrollStudent(String studentId, String courseCode);
+    // Enrolls if allowed; reports a rejection as a decision instead of throwing
+    EnrollmentDecision tryEnrollStudent(String studentId, String courseCode);
+    List<EnrollmentResult> enrollStudents(Collection<EnrollmentRequest> requests);
     void unenrollStudent(String studentId, String courseCode);
     void recordGrade(String studentId, String courseCode, Grade grade);
+    // Re-applies enrollments recorded earlier (journal replay, snapshot load), each with its grade
+    // if not null; skips validation and seat limits
+    void restoreEnrollment(String studentId, String courseCode, Grade grade);
+    void restoreEnrollments(String studentId, Map<String, Grade> grades);
+
+    // Waitlists for courses at capacity (FIFO)
+    int joinWaitlist(String studentId, String courseCode);
+    boolean leaveWaitlist(String studentId, String courseCode);
+    List<String> getWaitlist(String courseCode);
+
+    // Notified of every enrollment, drop and grade change
+    void addEnrollmentListener(EnrollmentListener listener);
+    void removeEnrollmentListener(EnrollmentListener listener);
     
     // Query methods
     List<Course> getEnrolledCourses(String studentId, Semester semester);
@@ -23,6 +40,7 @@ public interface EnrollmentService {
     
     // Validation methods
     boolean canEnroll(String studentId, String courseCode);
+    EnrollmentDecision evaluateEnrollment(String studentId, String courseCode);
     int calculateTotalCredits(String studentId, Semester semester);
     boolean hasPrerequisites(String studentId, String courseCode);
     
@@ -30,4 +48,7 @@ public interface EnrollmentService {
     Map<Grade, Long> getGradeDistribution(String courseCode);
     double getAverageGrade(String courseCode);
     List<Student> getTopPerformers(String courseCode, int limit);
+
+    // Consistent point-in-time view for long reports; close when done
+    EnrollmentSnapshot openSnapshot();
 }
\ No newline at end of file
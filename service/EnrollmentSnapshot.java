@@ -0,0 +1,36 @@
+package edu.ccrm.service;
+
+import edu.ccrm.domain.Grade;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Point-in-time view of every enrollment and grade, for reports that must
+ * not see half-applied changes. Opening and reading a snapshot never
+ * blocks enrollment; writers keep going and the snapshot keeps seeing the
+ * state as of {@link #getVersion()}. Course attributes such as credits are
+ * read live. Close the snapshot when done so old versions can be dropped.
+ */
+public interface EnrollmentSnapshot extends AutoCloseable {
+    /** Callback for {@link #forEachEnrollment}; {@code grade} is {@code null} if ungraded. */
+    @FunctionalInterface
+    interface Visitor {
+        void visit(String studentId, String courseCode, Grade grade);
+    }
+
+    long getVersion();
+
+    boolean isEnrolled(String studentId, String courseCode);
+    Grade getGrade(String studentId, String courseCode);
+    // Course code to grade; ungraded enrollments map to null
+    Map<String, Grade> getEnrollments(String studentId);
+    Set<String> getStudentIds();
+    List<String> getRoster(String courseCode);
+    Map<Grade, Long> getGradeDistribution(String courseCode);
+    double calculateGpa(String studentId);
+    void forEachEnrollment(Visitor visitor);
+
+    @Override
+    void close();
+}
\ No newline at end of file
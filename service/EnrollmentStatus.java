@@ -0,0 +1,18 @@
+package edu.ccrm.service;
+
+/**
+ * Outcome of an enrollment attempt.
+ */
+public enum EnrollmentStatus {
+    ENROLLED,
+    STUDENT_NOT_FOUND,
+    COURSE_NOT_FOUND,
+    ALREADY_ENROLLED,
+    PREREQUISITES_NOT_MET,
+    CREDIT_LIMIT_EXCEEDED,
+    COURSE_FULL;
+
+    public boolean isSuccess() {
+        return this == ENROLLED;
+    }
+}
\ No newline at end of file
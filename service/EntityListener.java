@@ -0,0 +1,18 @@
+package edu.ccrm.service;
+
+/**
+ * Callback for entities created, updated or deleted through a
+ * {@link CrudService}. Called after the change is applied, on the thread
+ * that made it. {@link #onUpdated} may repeat for an entity whose state
+ * did not change, since callers also use {@code update} to save in place.
+ */
+public interface EntityListener<T, ID> {
+    default void onCreated(T entity) {
+    }
+
+    default void onUpdated(T entity) {
+    }
+
+    default void onDeleted(ID id) {
+    }
+}
\ No newline at end of file
@@ -8,9 +8,17 @@ import java.util.List;
  */
 public interface StudentService extends CrudService<Student, String> {
     List<Student> findByEnrolledCourseCode(String courseCode);
+    // GPA queries, served from a sorted index; lists are highest GPA first
     List<Student> findByGpaGreaterThan(double gpa);
+    List<Student> findByGpaRange(double minGpa, double maxGpa);
+    List<Student> findTopByGpa(int limit);
+    int countByGpaBelow(double gpa);
+    // Percent of students with a strictly lower GPA
+    double getGpaPercentileRank(String studentId);
+    double getGpaAtPercentile(double percentile);
     void deactivateStudent(String studentId);
     List<Student> searchByName(String nameQuery);
+    List<Student> suggestByName(String nameQuery, int limit);
     
     // GPA calculation methods
     void updateGpa(String studentId);
@@ -13,6 +13,9 @@ import java.util.Map;
 public interface TranscriptService {
     // Basic transcript operations
     String generateTranscript(String studentId);
+    // Same text, built without reading or filling the cache; for bulk exports that
+    // would otherwise evict every transcript being read interactively
+    String generateTranscriptUncached(String studentId);
     String generateSemesterTranscript(String studentId, Semester semester);
     void exportTranscript(String studentId, String filePath);
     
@@ -0,0 +1,551 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.domain.Grade;
+import edu.ccrm.service.EnrollmentSnapshot;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compact enrollment and grade store. Student ids and course codes are
+ * interned to dense ints once; each student row then holds its enrollments as
+ * an {@code int[]} of course indexes plus a parallel {@code byte[]} of grade
+ * ordinals, and each course row holds its roster as an {@code int[]} of
+ * student indexes. An enrollment costs about 10 bytes of array payload plus
+ * its share of row overhead; at ten courses per student this measures around
+ * 25 bytes, against about 90 bytes for a nested
+ * {@code HashMap<String, Map<String, Grade>>} entry plus a roster set entry.
+ *
+ * <p>Student rows are multi-versioned. Every change installs a new immutable
+ * version stamped from a global commit clock, so a {@link Snapshot} reads
+ * each row as of its opening stamp while writers carry on. The next write to
+ * a row drops the versions no open snapshot can still reach.
+ *
+ * <p>Rows are individually synchronized for writes. Callers that need a
+ * multi-step check-then-act sequence for one student serialize it themselves.
+ */
+public class ColumnarEnrollmentStore {
+    private static final byte NO_GRADE = -1;
+    private static final byte ABSENT = -2;
+    private static final Grade[] GRADES = Grade.values();
+    private static final int INITIAL_ROW_CAPACITY = 4;
+    // Stamp of a version whose commit is still assigning its stamp
+    private static final long PENDING = Long.MAX_VALUE;
+    // Horizon while a snapshot is choosing its stamp: prune nothing
+    private static final long OPENING = 0L;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Set<Snapshot> openSnapshots = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final Interner<StudentRow> students = new Interner<>(StudentRow[]::new, StudentRow::new);
+    private final Interner<CourseRow> courses = new Interner<>(CourseRow[]::new, CourseRow::new);
+
+    public boolean isEnrolled(String studentId, String courseCode) {
+        StudentRow student = students.row(studentId);
+        int course = courses.lookup(courseCode);
+        return student != null && course >= 0 && indexOf(student.head, course) >= 0;
+    }
+
+    /** Adds the enrollment; returns {@code false} if it already existed. */
+    public boolean enroll(String studentId, String courseCode) {
+        int student = students.intern(studentId);
+        int course = courses.intern(courseCode);
+        if (!students.rowAt(student).add(course)) {
+            return false;
+        }
+        courses.rowAt(course).add(student);
+        return true;
+    }
+
+    /**
+     * Removes the enrollment and returns the grade it carried, or {@code null}.
+     *
+     * @throws IllegalStateException if the student is not enrolled
+     */
+    public Grade unenroll(String studentId, String courseCode) {
+        StudentRow student = students.row(studentId);
+        int course = courses.lookup(courseCode);
+        byte removed = student == null || course < 0 ? ABSENT : student.remove(course);
+        if (removed == ABSENT) {
+            throw new IllegalStateException(
+                String.format("Student %s is not enrolled in course %s", studentId, courseCode));
+        }
+        courses.rowAt(course).remove(students.lookup(studentId));
+        return toGrade(removed);
+    }
+
+    /** Grade of an enrollment, or {@code null} if ungraded or not enrolled. */
+    public Grade getGrade(String studentId, String courseCode) {
+        StudentRow student = students.row(studentId);
+        int course = courses.lookup(courseCode);
+        return student == null || course < 0 ? null : toGrade(valueOf(student.head, course));
+    }
+
+    /**
+     * Sets the grade of an existing enrollment and returns the previous one.
+     *
+     * @throws IllegalStateException if the student is not enrolled
+     */
+    public Grade setGrade(String studentId, String courseCode, Grade grade) {
+        StudentRow student = students.row(studentId);
+        int course = courses.lookup(courseCode);
+        byte previous = student == null || course < 0
+            ? ABSENT : student.set(course, (byte) grade.ordinal());
+        if (previous == ABSENT) {
+            throw new IllegalStateException("Student is not enrolled in this course");
+        }
+        return toGrade(previous);
+    }
+
+    public int rosterSize(String courseCode) {
+        CourseRow course = courses.row(courseCode);
+        return course == null ? 0 : course.size();
+    }
+
+    /** Ids of the students enrolled in a course. */
+    public List<String> roster(String courseCode) {
+        CourseRow course = courses.row(courseCode);
+        if (course == null) {
+            return new ArrayList<>();
+        }
+        int[] members = course.keys();
+        List<String> ids = new ArrayList<>(members.length);
+        for (int member : members) {
+            ids.add(students.name(member));
+        }
+        return ids;
+    }
+
+    /** Visits each enrolled course of a student with its grade ({@code null} if ungraded). */
+    public void forEachEnrollment(String studentId, BiConsumer<String, Grade> action) {
+        StudentRow student = students.row(studentId);
+        if (student != null) {
+            visit(student.head, action);
+        }
+    }
+
+    /** Visits each graded student of a course. */
+    public void forEachGrade(String courseCode, BiConsumer<String, Grade> action) {
+        CourseRow course = courses.row(courseCode);
+        if (course == null) {
+            return;
+        }
+        int courseIndex = courses.lookup(courseCode);
+        for (int member : course.keys()) {
+            Grade grade = toGrade(valueOf(students.rowAt(member).head, courseIndex));
+            if (grade != null) {
+                action.accept(students.name(member), grade);
+            }
+        }
+    }
+
+    public long enrollmentCount() {
+        return students.totalSize();
+    }
+
+    /** Approximate heap held by the rows and dictionaries, in bytes. */
+    public long estimateFootprintBytes() {
+        return students.footprint() + courses.footprint();
+    }
+
+    /**
+     * Opens a consistent view of all student rows as of now. Never blocks
+     * writers; must be closed.
+     */
+    public Snapshot openSnapshot() {
+        return new Snapshot();
+    }
+
+    private static Grade toGrade(byte ordinal) {
+        return ordinal < 0 ? null : GRADES[ordinal];
+    }
+
+    private static int indexOf(Version version, int key) {
+        int[] keys = version.keys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte valueOf(Version version, int key) {
+        int i = indexOf(version, key);
+        return i < 0 ? ABSENT : version.values[i];
+    }
+
+    private void visit(Version version, BiConsumer<String, Grade> action) {
+        for (int i = 0; i < version.keys.length; i++) {
+            action.accept(courses.name(version.keys[i]), toGrade(version.values[i]));
+        }
+    }
+
+    /**
+     * Oldest stamp an open snapshot may read at, {@link #OPENING} if one is
+     * still choosing its stamp, or {@code Long.MAX_VALUE} if none is open.
+     * A writer that misses a snapshot being opened finished its commit
+     * before that snapshot read the clock, so it cannot prune anything the
+     * snapshot needs.
+     */
+    private long pruneHorizon() {
+        if (openCount.get() == 0) {
+            return Long.MAX_VALUE;
+        }
+        long horizon = Long.MAX_VALUE;
+        for (Snapshot snapshot : openSnapshots) {
+            horizon = Math.min(horizon, snapshot.stamp);
+        }
+        return horizon;
+    }
+
+    /** Dense int ids for strings, with one row per id. */
+    private static final class Interner<R extends Row> {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final IntFunction<R[]> arrayFactory;
+        private final Supplier<R> rowFactory;
+        private volatile String[] names = new String[16];
+        private volatile R[] rows;
+        private int next;
+
+        Interner(IntFunction<R[]> arrayFactory, Supplier<R> rowFactory) {
+            this.arrayFactory = arrayFactory;
+            this.rowFactory = rowFactory;
+            this.rows = arrayFactory.apply(16);
+        }
+
+        int lookup(String name) {
+            Integer id = ids.get(name);
+            return id == null ? -1 : id;
+        }
+
+        int intern(String name) {
+            Integer id = ids.get(name);
+            return id != null ? id : internSlow(name);
+        }
+
+        private synchronized int internSlow(String name) {
+            Integer existing = ids.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            int id = next++;
+            if (id == rows.length) {
+                names = Arrays.copyOf(names, id * 2);
+                R[] grown = arrayFactory.apply(id * 2);
+                System.arraycopy(rows, 0, grown, 0, id);
+                rows = grown;
+            }
+            names[id] = name;
+            rows[id] = rowFactory.get();
+            // Publish the id only once its name and row are in place
+            ids.put(name, id);
+            return id;
+        }
+
+        String name(int id) {
+            return names[id];
+        }
+
+        R rowAt(int id) {
+            return rows[id];
+        }
+
+        R row(String name) {
+            int id = lookup(name);
+            return id < 0 ? null : rows[id];
+        }
+
+        R[] rows() {
+            return rows;
+        }
+
+        long totalSize() {
+            long total = 0;
+            for (R row : rows) {
+                if (row != null) {
+                    total += row.size();
+                }
+            }
+            return total;
+        }
+
+        long footprint() {
+            long bytes = 0;
+            for (R row : rows) {
+                if (row != null) {
+                    bytes += row.footprint();
+                }
+            }
+            // dictionary: one map node, boxed id and array slots per name
+            return bytes + (long) ids.size() * (32 + 16 + 8);
+        }
+    }
+
+    private interface Row {
+        int size();
+
+        long footprint();
+    }
+
+    /** Immutable contents of a student row as of one commit. */
+    private static final class Version {
+        static final Version EMPTY = new Version(new int[0], new byte[0], null, 0L);
+
+        final int[] keys;
+        final byte[] values;
+        volatile long stamp;
+        // Next older version; cut once no open snapshot can reach past this one
+        volatile Version older;
+
+        Version(int[] keys, byte[] values, Version older, long stamp) {
+            this.keys = keys;
+            this.values = values;
+            this.older = older;
+            this.stamp = stamp;
+        }
+    }
+
+    /** Course indexes and grades of one student, as a chain of versions. */
+    private final class StudentRow implements Row {
+        volatile Version head = Version.EMPTY;
+
+        @Override
+        public int size() {
+            return head.keys.length;
+        }
+
+        @Override
+        public long footprint() {
+            // row + version headers, two array headers, slot payload
+            return 16 + 32 + 32 + (long) head.keys.length * (Integer.BYTES + 1);
+        }
+
+        synchronized boolean add(int key) {
+            Version current = head;
+            if (indexOf(current, key) >= 0) {
+                return false;
+            }
+            int size = current.keys.length;
+            int[] keys = Arrays.copyOf(current.keys, size + 1);
+            byte[] values = Arrays.copyOf(current.values, size + 1);
+            keys[size] = key;
+            values[size] = NO_GRADE;
+            commit(keys, values);
+            return true;
+        }
+
+        synchronized byte set(int key, byte value) {
+            Version current = head;
+            int i = indexOf(current, key);
+            if (i < 0) {
+                return ABSENT;
+            }
+            byte previous = current.values[i];
+            byte[] values = current.values.clone();
+            values[i] = value;
+            // Keys are unchanged and immutable, so the new version shares them
+            commit(current.keys, values);
+            return previous;
+        }
+
+        synchronized byte remove(int key) {
+            Version current = head;
+            int i = indexOf(current, key);
+            if (i < 0) {
+                return ABSENT;
+            }
+            byte removed = current.values[i];
+            // Order is not significant: move the last slot into the gap
+            int last = current.keys.length - 1;
+            int[] keys = Arrays.copyOf(current.keys, last);
+            byte[] values = Arrays.copyOf(current.values, last);
+            if (i < last) {
+                keys[i] = current.keys[last];
+                values[i] = current.values[last];
+            }
+            commit(keys, values);
+            return removed;
+        }
+
+        /** Newest version committed at or before {@code stamp}. */
+        Version visibleAt(long stamp) {
+            for (Version version = head; version != null; version = version.older) {
+                long committed;
+                while ((committed = version.stamp) == PENDING) {
+                    // The writer is between publishing and stamping; a few instructions
+                    Thread.onSpinWait();
+                }
+                if (committed <= stamp) {
+                    return version;
+                }
+            }
+            return Version.EMPTY;
+        }
+
+        // Publish first, stamp second: a snapshot that reads the clock after
+        // the stamp was taken is sure to find the version in the chain
+        private void commit(int[] keys, byte[] values) {
+            Version next = new Version(keys, values, head, PENDING);
+            head = next;
+            next.stamp = clock.incrementAndGet();
+            long horizon = pruneHorizon();
+            for (Version version = next; version != null; version = version.older) {
+                if (version.stamp <= horizon) {
+                    if (version.older != null) {
+                        version.older = null;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Roster of one course: live only, snapshots derive rosters from student rows. */
+    private static final class CourseRow implements Row {
+        private int[] keys = new int[INITIAL_ROW_CAPACITY];
+        private int size;
+
+        @Override
+        public synchronized int size() {
+            return size;
+        }
+
+        @Override
+        public synchronized long footprint() {
+            // row header + array header + slot payload
+            return 16 + 16 + (long) keys.length * Integer.BYTES;
+        }
+
+        synchronized int[] keys() {
+            return Arrays.copyOf(keys, size);
+        }
+
+        synchronized void add(int key) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    return;
+                }
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            keys[size++] = key;
+        }
+
+        synchronized void remove(int key) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    keys[i] = keys[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * All student rows as of the stamp taken when it was opened. Reads walk
+     * each row's version chain back to that stamp; rosters are built from
+     * the student rows on first use.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private volatile long stamp = OPENING;
+        private Map<Integer, List<String>> rosters;
+        private boolean closed;
+
+        private Snapshot() {
+            openCount.incrementAndGet();
+            openSnapshots.add(this);
+            stamp = clock.get();
+        }
+
+        public long getStamp() {
+            return stamp;
+        }
+
+        public boolean isEnrolled(String studentId, String courseCode) {
+            StudentRow student = students.row(studentId);
+            int course = courses.lookup(courseCode);
+            return student != null && course >= 0 && indexOf(student.visibleAt(stamp), course) >= 0;
+        }
+
+        public Grade getGrade(String studentId, String courseCode) {
+            StudentRow student = students.row(studentId);
+            int course = courses.lookup(courseCode);
+            return student == null || course < 0 ? null : toGrade(valueOf(student.visibleAt(stamp), course));
+        }
+
+        public void forEachEnrollment(String studentId, BiConsumer<String, Grade> action) {
+            StudentRow student = students.row(studentId);
+            if (student != null) {
+                visit(student.visibleAt(stamp), action);
+            }
+        }
+
+        /** Ids of students with at least one enrollment. */
+        public Set<String> studentIds() {
+            Set<String> ids = new LinkedHashSet<>();
+            StudentRow[] rows = students.rows();
+            for (int id = 0; id < rows.length; id++) {
+                String name = students.name(id);
+                if (rows[id] != null && name != null && rows[id].visibleAt(stamp).keys.length > 0) {
+                    ids.add(name);
+                }
+            }
+            return ids;
+        }
+
+        public List<String> roster(String courseCode) {
+            int course = courses.lookup(courseCode);
+            if (course < 0) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(rosters().getOrDefault(course, Collections.emptyList()));
+        }
+
+        /** Visits every enrollment as (student id, course code, grade or {@code null}). */
+        public void forEachEnrollment(EnrollmentSnapshot.Visitor visitor) {
+            StudentRow[] rows = students.rows();
+            for (int id = 0; id < rows.length; id++) {
+                if (rows[id] == null) {
+                    continue;
+                }
+                Version version = rows[id].visibleAt(stamp);
+                String studentId = students.name(id);
+                for (int i = 0; i < version.keys.length; i++) {
+                    visitor.visit(studentId, courses.name(version.keys[i]), toGrade(version.values[i]));
+                }
+            }
+        }
+
+        private synchronized Map<Integer, List<String>> rosters() {
+            if (rosters == null) {
+                Map<Integer, List<String>> built = new HashMap<>();
+                StudentRow[] rows = students.rows();
+                for (int id = 0; id < rows.length; id++) {
+                    if (rows[id] == null) {
+                        continue;
+                    }
+                    for (int course : rows[id].visibleAt(stamp).keys) {
+                        built.computeIfAbsent(course, k -> new ArrayList<>()).add(students.name(id));
+                    }
+                }
+                rosters = built;
+            }
+            return rosters;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                openSnapshots.remove(this);
+                openCount.decrementAndGet();
+            }
+        }
+    }
+}
\ No newline at end of file
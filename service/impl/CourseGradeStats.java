@@ -0,0 +1,48 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.domain.Grade;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Running grade aggregates for one course: a histogram of grade counts and
+ * the sum of grade points, kept in tenths of a point so repeated updates do
+ * not accumulate rounding error.
+ */
+final class CourseGradeStats {
+    private final long[] counts = new long[Grade.values().length];
+    private long graded;
+    private long pointTenths;
+
+    /** Applies a grade change; {@code null} stands for "no grade". */
+    synchronized void replace(Grade previous, Grade current) {
+        if (previous == current) {
+            return;
+        }
+        if (previous != null) {
+            counts[previous.ordinal()]--;
+            graded--;
+            pointTenths -= previous.getPointTenths();
+        }
+        if (current != null) {
+            counts[current.ordinal()]++;
+            graded++;
+            pointTenths += current.getPointTenths();
+        }
+    }
+
+    synchronized Map<Grade, Long> distribution() {
+        Map<Grade, Long> distribution = new EnumMap<>(Grade.class);
+        for (Grade grade : Grade.values()) {
+            long count = counts[grade.ordinal()];
+            if (count > 0) {
+                distribution.put(grade, count);
+            }
+        }
+        return distribution;
+    }
+
+    synchronized double average() {
+        return graded == 0 ? 0.0 : pointTenths / (10.0 * graded);
+    }
+}
\ No newline at end of file
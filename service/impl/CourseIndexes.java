@@ -0,0 +1,130 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.domain.Course;
+import edu.ccrm.domain.Person;
+import edu.ccrm.domain.Semester;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary indexes over the course catalogue: by semester, case-folded
+ * department, instructor id, credits and title trigrams. Kept current by the owning service
+ * on create/update/delete and by listening to course setters.
+ */
+final class CourseIndexes implements Course.ChangeListener {
+    private final Map<Semester, Set<Course>> bySemester = new EnumMap<>(Semester.class);
+    private final Map<String, Set<Course>> byDepartment = new ConcurrentHashMap<>();
+    private final Map<String, Set<Course>> byInstructor = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Set<Course>> byCredits = new ConcurrentSkipListMap<>();
+    private final TrigramIndex<Course> titles = new TrigramIndex<>();
+
+    CourseIndexes() {
+        // All semester buckets exist up front so the EnumMap is never structurally modified
+        for (Semester semester : Semester.values()) {
+            bySemester.put(semester, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    void add(Course course) {
+        course.addChangeListener(this);
+        addTo(bySemester, course.getSemester(), course);
+        addTo(byDepartment, departmentKey(course.getDepartment()), course);
+        addTo(byInstructor, instructorKey(course.getInstructor()), course);
+        addTo(byCredits, course.getCredits(), course);
+        titles.put(course, course.getTitle());
+    }
+
+    void remove(Course course) {
+        course.removeChangeListener(this);
+        removeFrom(bySemester, course.getSemester(), course);
+        removeFrom(byDepartment, departmentKey(course.getDepartment()), course);
+        removeFrom(byInstructor, instructorKey(course.getInstructor()), course);
+        removeFrom(byCredits, course.getCredits(), course);
+        titles.remove(course);
+    }
+
+    @Override
+    public void onChange(Course course, Course.Field field, Object oldValue, Object newValue) {
+        switch (field) {
+            case SEMESTER:
+                removeFrom(bySemester, (Semester) oldValue, course);
+                addTo(bySemester, (Semester) newValue, course);
+                break;
+            case DEPARTMENT:
+                removeFrom(byDepartment, departmentKey((String) oldValue), course);
+                addTo(byDepartment, departmentKey((String) newValue), course);
+                break;
+            case INSTRUCTOR:
+                removeFrom(byInstructor, instructorKey((Person) oldValue), course);
+                addTo(byInstructor, instructorKey((Person) newValue), course);
+                break;
+            case CREDITS:
+                removeFrom(byCredits, (Integer) oldValue, course);
+                addTo(byCredits, (Integer) newValue, course);
+                break;
+            case TITLE:
+                titles.put(course, (String) newValue);
+                break;
+            default:
+                break;
+        }
+    }
+
+    Set<Course> bySemester(Semester semester) {
+        return semester == null ? Collections.emptySet() : bySemester.get(semester);
+    }
+
+    Set<Course> byDepartment(String department) {
+        String key = departmentKey(department);
+        return key == null ? Collections.emptySet() : byDepartment.getOrDefault(key, Collections.emptySet());
+    }
+
+    Set<Course> byInstructor(String instructorId) {
+        return instructorId == null ? Collections.emptySet()
+            : byInstructor.getOrDefault(instructorId, Collections.emptySet());
+    }
+
+    List<Course> byCreditRange(int minCredits, int maxCredits) {
+        List<Course> result = new ArrayList<>();
+        if (minCredits > maxCredits) {
+            return result;
+        }
+        for (Set<Course> bucket : byCredits.subMap(minCredits, true, maxCredits, true).values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    List<Course> titleContains(String query) {
+        return titles.search(query);
+    }
+
+    List<Course> titleSuggestions(String query, int limit) {
+        return titles.rank(query, limit);
+    }
+
+    private static <K> void addTo(Map<K, Set<Course>> index, K key, Course course) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(course);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Course>> index, K key, Course course) {
+        if (key != null) {
+            // Empty buckets are kept: dropping them could race with a concurrent add
+            Set<Course> bucket = index.get(key);
+            if (bucket != null) {
+                bucket.remove(course);
+            }
+        }
+    }
+
+    private static String departmentKey(String department) {
+        return department == null ? null : department.toLowerCase(Locale.ROOT);
+    }
+
+    private static String instructorKey(Person instructor) {
+        return instructor == null ? null : instructor.getId();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.domain.Grade;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded top-K of graded students for one course, ordered by grade points
+ * (highest first) and then by student id. Holds at most {@code capacity}
+ * entries; when a removal or a downgrade leaves a slot that a student
+ * outside the top-K may deserve, the board is marked stale and rebuilt on
+ * the next read.
+ */
+final class CourseLeaderboard {
+    static final Comparator<Map.Entry<String, Grade>> ORDER =
+        Comparator.<Map.Entry<String, Grade>>comparingDouble(entry -> -entry.getValue().getPoints())
+            .thenComparing(Map.Entry::getKey);
+
+    private final int capacity;
+    private final TreeSet<Map.Entry<String, Grade>> top = new TreeSet<>(ORDER);
+    private final Map<String, Map.Entry<String, Grade>> members = new HashMap<>();
+    private int graded;
+    private boolean stale;
+
+    CourseLeaderboard(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Leaderboard capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** Applies a grade change; {@code null} stands for "no grade". */
+    synchronized void replace(String studentId, Grade previous, Grade current) {
+        Map.Entry<String, Grade> member = members.remove(studentId);
+        if (member != null) {
+            top.remove(member);
+        }
+        if (previous != null) {
+            graded--;
+        }
+        if (current != null) {
+            graded++;
+            Map.Entry<String, Grade> entry = new AbstractMap.SimpleImmutableEntry<>(studentId, current);
+            top.add(entry);
+            members.put(studentId, entry);
+            if (top.size() > capacity) {
+                members.remove(top.pollLast().getKey());
+            } else if (member != null && graded > capacity && top.last() == entry) {
+                // A member that fell to the last slot may now rank below a student outside the board
+                stale = true;
+            }
+        }
+        if (top.size() < Math.min(graded, capacity)) {
+            stale = true;
+        }
+    }
+
+    /**
+     * Ids of the best {@code limit} students; {@code limit} must not exceed the
+     * capacity. A stale board is first rebuilt from {@code allGrades}, which is
+     * read while holding this board's monitor; writers that change a grade map
+     * and then call {@link #replace} hold the same monitor, so the two agree.
+     */
+    synchronized List<String> top(int limit, Supplier<Map<String, Grade>> allGrades) {
+        if (stale) {
+            rebuild(allGrades.get());
+        }
+        List<String> ids = new ArrayList<>(Math.min(limit, top.size()));
+        for (Map.Entry<String, Grade> entry : top) {
+            if (ids.size() == limit) {
+                break;
+            }
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    private void rebuild(Map<String, Grade> allGrades) {
+        top.clear();
+        members.clear();
+        for (Map.Entry<String, Grade> grade : allGrades.entrySet()) {
+            Map.Entry<String, Grade> entry = new AbstractMap.SimpleImmutableEntry<>(grade.getKey(), grade.getValue());
+            top.add(entry);
+            members.put(grade.getKey(), entry);
+            if (top.size() > capacity) {
+                members.remove(top.pollLast().getKey());
+            }
+        }
+        graded = allGrades.size();
+        stale = false;
+    }
+}
\ No newline at end of file
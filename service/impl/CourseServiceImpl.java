@@ -4,13 +4,34 @@ import edu.ccrm.domain.Course;
 import edu.ccrm.domain.Instructor;
 import edu.ccrm.domain.Semester;
 import edu.ccrm.service.CourseService;
+import edu.ccrm.service.EntityListener;
 import edu.ccrm.service.StudentService;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public class CourseServiceImpl implements CourseService {
-    private final Map<String, Course> courses = new HashMap<>();
+    private final Map<String, Course> courses = new ConcurrentHashMap<>();
+    private final CourseIndexes indexes = new CourseIndexes();
     private final StudentService studentService;
+    private final List<EntityListener<Course, String>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean cycleChecks = true;
+    // Setter changes on a stored course count as updates of that course;
+    // prerequisite edits that would close a cycle are rejected before they apply
+    private final Course.ChangeListener courseListener = new Course.ChangeListener() {
+        @Override
+        public void onChange(Course course, Course.Field field, Object oldValue, Object newValue) {
+            onCourseChanged(course, field, oldValue, newValue);
+        }
+
+        @Override
+        public void beforeChange(Course course, Course.Field field, Object oldValue, Object newValue) {
+            if (field == Course.Field.PREREQUISITES && cycleChecks && courses.get(course.getCode()) == course) {
+                checkAcyclic(course.getCode(), (Set<?>) newValue);
+            }
+        }
+    };
 
     public CourseServiceImpl(StudentService studentService) {
         this.studentService = studentService;
@@ -18,10 +39,23 @@ public class CourseServiceImpl implements CourseService {
 
     @Override
     public Course create(Course course) {
-        if (exists(course.getCode())) {
-            throw new IllegalArgumentException("Course already exists with code: " + course.getCode());
+        // The lock Course takes for prerequisite edits, so none slips in between check and insert
+        synchronized (Course.class) {
+            if (courses.containsKey(course.getCode())) {
+                throw new IllegalArgumentException("Course already exists with code: " + course.getCode());
+            }
+            if (cycleChecks) {
+                checkAcyclic(course.getCode(), course.getPrerequisites());
+            }
+            if (courses.putIfAbsent(course.getCode(), course) != null) {
+                throw new IllegalArgumentException("Course already exists with code: " + course.getCode());
+            }
+        }
+        indexes.add(course);
+        course.addChangeListener(courseListener);
+        for (EntityListener<Course, String> listener : listeners) {
+            listener.onCreated(course);
         }
-        courses.put(course.getCode(), course);
         return course;
     }
 
@@ -37,19 +71,39 @@ public class CourseServiceImpl implements CourseService {
 
     @Override
     public Course update(Course course) {
-        if (!exists(course.getCode())) {
+        Course previous;
+        synchronized (Course.class) {
+            if (cycleChecks && courses.get(course.getCode()) != course) {
+                checkAcyclic(course.getCode(), course.getPrerequisites());
+            }
+            previous = courses.replace(course.getCode(), course);
+        }
+        if (previous == null) {
             throw new IllegalArgumentException("Course not found with code: " + course.getCode());
         }
-        courses.put(course.getCode(), course);
+        if (previous != course) {
+            indexes.remove(previous);
+            indexes.add(course);
+            previous.removeChangeListener(courseListener);
+            course.addChangeListener(courseListener);
+        }
+        for (EntityListener<Course, String> listener : listeners) {
+            listener.onUpdated(course);
+        }
         return course;
     }
 
     @Override
     public void delete(String code) {
-        if (!exists(code)) {
+        Course removed = courses.remove(code);
+        if (removed == null) {
             throw new IllegalArgumentException("Course not found with code: " + code);
         }
-        courses.remove(code);
+        indexes.remove(removed);
+        removed.removeChangeListener(courseListener);
+        for (EntityListener<Course, String> listener : listeners) {
+            listener.onDeleted(code);
+        }
     }
 
     @Override
@@ -57,26 +111,29 @@ public class CourseServiceImpl implements CourseService {
         return courses.containsKey(code);
     }
 
+    @Override
+    public void addEntityListener(EntityListener<Course, String> listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    @Override
+    public void removeEntityListener(EntityListener<Course, String> listener) {
+        listeners.remove(listener);
+    }
+
     @Override
     public List<Course> findByDepartment(String department) {
-        return courses.values().stream()
-            .filter(course -> course.getDepartment().equalsIgnoreCase(department))
-            .collect(Collectors.toList());
+        return new ArrayList<>(indexes.byDepartment(department));
     }
 
     @Override
     public List<Course> findBySemester(Semester semester) {
-        return courses.values().stream()
-            .filter(course -> course.getSemester() == semester)
-            .collect(Collectors.toList());
+        return new ArrayList<>(indexes.bySemester(semester));
     }
 
     @Override
     public List<Course> findByInstructor(String instructorId) {
-        return courses.values().stream()
-            .filter(course -> course.getInstructor() != null &&
-                            course.getInstructor().getId().equals(instructorId))
-            .collect(Collectors.toList());
+        return new ArrayList<>(indexes.byInstructor(instructorId));
     }
 
     @Override
@@ -98,26 +155,145 @@ public class CourseServiceImpl implements CourseService {
 
     @Override
     public List<Course> searchByTitle(String titleQuery) {
-        String query = titleQuery.toLowerCase();
-        return courses.values().stream()
-            .filter(course -> course.getTitle().toLowerCase().contains(query))
-            .collect(Collectors.toList());
+        return indexes.titleContains(titleQuery);
+    }
+
+    @Override
+    public List<Course> suggestByTitle(String titleQuery, int limit) {
+        return indexes.titleSuggestions(titleQuery, limit);
     }
 
     @Override
     public List<Course> filterByCredits(int minCredits, int maxCredits) {
-        return courses.values().stream()
-            .filter(course -> course.getCredits() >= minCredits && 
-                            course.getCredits() <= maxCredits)
-            .collect(Collectors.toList());
+        return indexes.byCreditRange(minCredits, maxCredits);
     }
 
     @Override
     public List<Course> filterActiveByDepartmentAndSemester(String department, Semester semester) {
-        return courses.values().stream()
+        Set<Course> inDepartment = indexes.byDepartment(department);
+        Set<Course> inSemester = indexes.bySemester(semester);
+        // Walk the smaller bucket and probe the other
+        Set<Course> smaller = inDepartment.size() <= inSemester.size() ? inDepartment : inSemester;
+        Set<Course> larger = smaller == inDepartment ? inSemester : inDepartment;
+        return smaller.stream()
             .filter(Course::isActive)
-            .filter(course -> course.getDepartment().equalsIgnoreCase(department))
-            .filter(course -> course.getSemester() == semester)
+            .filter(larger::contains)
             .collect(Collectors.toList());
     }
+
+    @Override
+    public void suspendCycleChecks() {
+        cycleChecks = false;
+    }
+
+    @Override
+    public void resumeCycleChecks() {
+        synchronized (Course.class) {
+            if (cycleChecks) {
+                return;
+            }
+            checkCatalogueAcyclic();
+            cycleChecks = true;
+        }
+    }
+
+    /**
+     * Depth-first walk over every course with an explicit stack, for a
+     * catalogue whose edits went in unchecked. A prerequisite met again while
+     * still on the current path closes a cycle.
+     */
+    private void checkCatalogueAcyclic() {
+        // Absent: not reached yet; false: on the current path; true: done
+        Map<String, Boolean> finished = new HashMap<>();
+        for (String root : courses.keySet()) {
+            if (finished.containsKey(root)) {
+                continue;
+            }
+            Deque<String> path = new ArrayDeque<>();
+            Deque<Iterator<String>> pending = new ArrayDeque<>();
+            finished.put(root, false);
+            path.push(root);
+            pending.push(prerequisitesOf(root).iterator());
+            while (!pending.isEmpty()) {
+                Iterator<String> edges = pending.peek();
+                if (!edges.hasNext()) {
+                    finished.put(path.pop(), true);
+                    pending.pop();
+                    continue;
+                }
+                String next = edges.next();
+                Boolean done = finished.get(next);
+                if (done == null) {
+                    finished.put(next, false);
+                    path.push(next);
+                    pending.push(prerequisitesOf(next).iterator());
+                } else if (!done) {
+                    StringBuilder cycle = new StringBuilder();
+                    boolean inCycle = false;
+                    for (Iterator<String> it = path.descendingIterator(); it.hasNext(); ) {
+                        String step = it.next();
+                        inCycle |= step.equals(next);
+                        if (inCycle) {
+                            cycle.append(step).append(" -> ");
+                        }
+                    }
+                    throw new IllegalStateException("Prerequisite cycle: " + cycle.append(next));
+                }
+            }
+        }
+    }
+
+    private Set<String> prerequisitesOf(String code) {
+        Course course = courses.get(code);
+        return course == null ? Collections.emptySet() : course.getPrerequisites();
+    }
+
+    /**
+     * Rejects prerequisites for {@code code} that already depend on it, directly
+     * or through other courses in the catalogue. Edges out of {@code code}
+     * itself are not followed: they are the ones being replaced.
+     */
+    private void checkAcyclic(String code, Collection<?> prerequisites) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        Map<String, String> reachedFrom = new HashMap<>();
+        for (Object prerequisite : prerequisites) {
+            pending.push((String) prerequisite);
+            reachedFrom.put((String) prerequisite, code);
+        }
+        while (!pending.isEmpty()) {
+            String current = pending.pop();
+            if (current.equals(code)) {
+                StringBuilder cycle = new StringBuilder(code);
+                for (String step = reachedFrom.get(code); ; step = reachedFrom.get(step)) {
+                    cycle.insert(0, step + " -> ");
+                    if (step.equals(code)) {
+                        break;
+                    }
+                }
+                throw new IllegalArgumentException("Prerequisite cycle: " + cycle);
+            }
+            if (!visited.add(current)) {
+                continue;
+            }
+            Course course = courses.get(current);
+            if (course != null) {
+                for (String next : course.getPrerequisites()) {
+                    if (!visited.contains(next)) {
+                        reachedFrom.putIfAbsent(next, current);
+                        pending.push(next);
+                    }
+                }
+            }
+        }
+    }
+
+    private void onCourseChanged(Course course, Course.Field field, Object oldValue, Object newValue) {
+        if (courses.get(course.getCode()) != course) {
+            return;
+        }
+        for (EntityListener<Course, String> listener : listeners) {
+            listener.onUpdated(course);
+        }
+    }
 }
\ No newline at end of file
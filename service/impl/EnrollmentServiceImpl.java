@@ -2,87 +2,363 @@ package edu.ccrm.service.impl;
 
 import edu.ccrm.domain.*;
 import edu.ccrm.exception.*;
+import edu.ccrm.service.EnrollmentDecision;
+import edu.ccrm.service.EnrollmentListener;
+import edu.ccrm.service.EnrollmentRequest;
+import edu.ccrm.service.EnrollmentResult;
+import edu.ccrm.service.EnrollmentSnapshot;
 import edu.ccrm.service.EnrollmentService;
+import edu.ccrm.service.EnrollmentStatus;
 import edu.ccrm.service.StudentService;
 import edu.ccrm.service.CourseService;
+import edu.ccrm.config.AppConfig;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 public class EnrollmentServiceImpl implements EnrollmentService {
     private final StudentService studentService;
     private final CourseService courseService;
-    private final Map<String, Map<String, Grade>> grades;
+    // Enrollments and grades, with student and course rosters, in interned int form
+    private final ColumnarEnrollmentStore store;
+    // FIFO waitlists of student ids per course
+    private final Map<String, Deque<String>> waitlists;
+    // Courses whose setters this service already listens to
+    private final Set<String> observedCourses;
+    // Running grade histogram and point sum per course
+    private final Map<String, CourseGradeStats> gradeStats;
+    // Bounded top-K of graded students per course
+    private final Map<String, CourseLeaderboard> leaderboards;
+    private final int leaderboardSize;
+    private final Course.ChangeListener courseListener = this::onCourseChanged;
     private final int maxCreditsPerSemester;
+    // Per-student locks: check-then-enroll is atomic for one student while
+    // different students enroll in parallel.
+    private final StripedLock studentLocks;
+    // Transitive prerequisite closures and completed courses, as bitsets
+    private final PrerequisiteGraph prerequisiteGraph = new PrerequisiteGraph();
+    private final List<EnrollmentListener> listeners = new CopyOnWriteArrayList<>();
 
     public EnrollmentServiceImpl(StudentService studentService, CourseService courseService, int maxCreditsPerSemester) {
+        this(studentService, courseService, maxCreditsPerSemester, AppConfig.getInstance().getLockStripes());
+    }
+
+    public EnrollmentServiceImpl(StudentService studentService, CourseService courseService,
+                                 int maxCreditsPerSemester, int lockStripes) {
         this.studentService = studentService;
         this.courseService = courseService;
-        this.grades = new HashMap<>();
+        this.store = new ColumnarEnrollmentStore();
+        this.observedCourses = ConcurrentHashMap.newKeySet();
+        this.waitlists = new ConcurrentHashMap<>();
+        this.gradeStats = new ConcurrentHashMap<>();
+        this.leaderboards = new ConcurrentHashMap<>();
+        this.leaderboardSize = AppConfig.getInstance().getLeaderboardSize();
         this.maxCreditsPerSemester = maxCreditsPerSemester;
+        this.studentLocks = new StripedLock(lockStripes);
     }
 
     @Override
     public void enrollStudent(String studentId, String courseCode) {
+        EnrollmentDecision decision = tryEnrollStudent(studentId, courseCode);
+        if (!decision.isAllowed()) {
+            throw rejection(studentId, courseCode, decision);
+        }
+    }
+
+    @Override
+    public EnrollmentDecision tryEnrollStudent(String studentId, String courseCode) {
+        Student student = studentService.findById(studentId).orElse(null);
+        if (student == null) {
+            return EnrollmentDecision.of(EnrollmentStatus.STUDENT_NOT_FOUND);
+        }
+        Course course = courseService.findById(courseCode).orElse(null);
+        if (course == null) {
+            return EnrollmentDecision.of(EnrollmentStatus.COURSE_NOT_FOUND);
+        }
+
+        Lock values = course.valuesReadLock();
+        values.lock();
+        Lock lock = studentLocks.forKey(studentId);
+        lock.lock();
+        try {
+            return tryEnroll(student, course);
+        } finally {
+            lock.unlock();
+            values.unlock();
+            completeCall();
+        }
+    }
+
+    @Override
+    public List<EnrollmentResult> enrollStudents(Collection<EnrollmentRequest> requests) {
+        List<EnrollmentRequest> items = new ArrayList<>(requests);
+        EnrollmentDecision[] decisions = new EnrollmentDecision[items.size()];
+
+        // Group item positions by student, keeping submission order within each group
+        Map<String, List<Integer>> byStudent = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            byStudent.computeIfAbsent(items.get(i).getStudentId(), k -> new ArrayList<>()).add(i);
+        }
+
+        Map<String, Optional<Course>> courseCache = new HashMap<>();
+        // One durability wait for the whole batch, after the last student's lock is released
+        try {
+            for (Map.Entry<String, List<Integer>> group : byStudent.entrySet()) {
+                String studentId = group.getKey();
+                List<Integer> positions = group.getValue();
+                Optional<Student> found = studentService.findById(studentId);
+                if (found.isEmpty()) {
+                    positions.forEach(i -> decisions[i] = EnrollmentDecision.of(EnrollmentStatus.STUDENT_NOT_FOUND));
+                    continue;
+                }
+                Student student = found.get();
+
+                Set<Course> groupCourses = new HashSet<>();
+                for (int i : positions) {
+                    courseCache.computeIfAbsent(items.get(i).getCourseCode(), courseService::findById)
+                        .ifPresent(groupCourses::add);
+                }
+                List<Lock> values = lockCourseValues(groupCourses);
+                Lock lock = studentLocks.forKey(studentId);
+                lock.lock();
+                try {
+                    // Validate the whole group against running per-semester totals, then apply
+                    Map<Semester, Integer> pendingCredits = new EnumMap<>(Semester.class);
+                    Set<String> pendingCodes = new HashSet<>();
+                    List<Course> accepted = new ArrayList<>();
+                    for (int i : positions) {
+                        String courseCode = items.get(i).getCourseCode();
+                        Optional<Course> course = courseCache.computeIfAbsent(courseCode, courseService::findById);
+                        if (course.isEmpty()) {
+                            decisions[i] = EnrollmentDecision.of(EnrollmentStatus.COURSE_NOT_FOUND);
+                            continue;
+                        }
+                        Semester semester = course.get().getSemester();
+                        EnrollmentDecision decision = pendingCodes.contains(courseCode)
+                            ? EnrollmentDecision.of(EnrollmentStatus.ALREADY_ENROLLED)
+                            : validate(student, course.get(), pendingCredits.getOrDefault(semester, 0));
+                        if (decision.isAllowed() && !course.get().tryReserveSeat()) {
+                            decision = EnrollmentDecision.courseFull(course.get().getCapacity());
+                        }
+                        decisions[i] = decision;
+                        if (decision.isAllowed()) {
+                            pendingCodes.add(courseCode);
+                            if (semester != null) {
+                                pendingCredits.merge(semester, course.get().getCredits(), Integer::sum);
+                            }
+                            accepted.add(course.get());
+                        }
+                    }
+
+                    if (!accepted.isEmpty()) {
+                        int applied = 0;
+                        try {
+                            for (Course course : accepted) {
+                                applyEnrollment(student, course);
+                                applied++;
+                            }
+                        } finally {
+                            // A failure partway leaves the remaining seats reserved but unused
+                            for (Course course : accepted.subList(applied, accepted.size())) {
+                                course.releaseSeat();
+                            }
+                        }
+                        studentService.update(student);
+                    }
+                } finally {
+                    lock.unlock();
+                    unlockAll(values);
+                }
+            }
+        } finally {
+            completeCall();
+        }
+
+        List<EnrollmentResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            results.add(new EnrollmentResult(items.get(i), decisions[i]));
+        }
+        return results;
+    }
+
+    @Override
+    public void unenrollStudent(String studentId, String courseCode) {
         Student student = studentService.findById(studentId)
             .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
         
         Course course = courseService.findById(courseCode)
             .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
         
-        if (isEnrolled(studentId, courseCode)) {
-            throw new DuplicateEnrollmentException(
-                String.format("Student %s is already enrolled in course %s", studentId, courseCode));
-        }
+        Lock values = course.valuesReadLock();
+        values.lock();
+        Lock lock = studentLocks.forKey(studentId);
+        lock.lock();
+        try {
+            if (!isEnrolled(studentId, courseCode)) {
+                throw new IllegalStateException(
+                    String.format("Student %s is not enrolled in course %s", studentId, courseCode));
+            }
 
-        if (!hasPrerequisites(studentId, courseCode)) {
-            throw new PrerequisiteNotMetException(studentId, courseCode, "Prerequisites");
+            student.unenrollFromCourse(course);
+            Grade removed;
+            CourseLeaderboard board = leaderboardFor(courseCode);
+            synchronized (board) {
+                removed = store.unenroll(studentId, courseCode);
+                board.replace(studentId, removed, null);
+            }
+            for (EnrollmentListener listener : listeners) {
+                listener.onUnenrolled(studentId, courseCode, removed);
+            }
+            if (removed != null && removed.isPassing()) {
+                prerequisiteGraph.setCompleted(studentId, courseCode, false);
+            }
+            if (removed != null) {
+                statsFor(courseCode).replace(removed, null);
+                student.applyGradeChange(removed, null, course.getCredits());
+                studentService.updateGpa(studentId);
+            }
+            course.releaseSeat();
+            
+            studentService.update(student);
+        } finally {
+            lock.unlock();
+            values.unlock();
+            completeCall();
         }
+        // Outside the dropping student's lock: promotion takes other students' locks
+        promoteFromWaitlist(course);
+    }
 
-        int currentCredits = calculateTotalCredits(studentId, course.getSemester());
-        if (currentCredits + course.getCredits() > maxCreditsPerSemester) {
-            throw new MaxCreditLimitExceededException(
-                "Enrolling in this course would exceed the maximum credits allowed per semester",
-                currentCredits,
-                maxCreditsPerSemester
-            );
+    @Override
+    public void restoreEnrollment(String studentId, String courseCode, Grade grade) {
+        restoreEnrollments(studentId, Collections.singletonMap(courseCode, grade));
+    }
+
+    @Override
+    public void restoreEnrollments(String studentId, Map<String, Grade> grades) {
+        Student student = studentService.findById(studentId)
+            .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
+
+        List<Course> courses = new ArrayList<>(grades.size());
+        for (String courseCode : grades.keySet()) {
+            courses.add(courseService.findById(courseCode)
+                .orElseThrow(() -> new EntityNotFoundException("Course", courseCode)));
         }
 
-        student.enrollInCourse(course);
-        studentService.update(student);
+        List<Lock> values = lockCourseValues(courses);
+        Lock lock = studentLocks.forKey(studentId);
+        lock.lock();
+        try {
+            boolean graded = false;
+            for (Course course : courses) {
+                if (isEnrolled(studentId, course.getCode())) {
+                    continue;
+                }
+                // The enrollment was valid when made; capacity may have shrunk since
+                course.occupySeat();
+                applyEnrollment(student, course);
+                Grade grade = grades.get(course.getCode());
+                if (grade != null) {
+                    applyGrade(student, course, grade, false);
+                    graded = true;
+                }
+            }
+            // One GPA update for the whole batch rather than one per grade
+            if (graded) {
+                studentService.updateGpa(studentId);
+            } else {
+                studentService.update(student);
+            }
+        } finally {
+            lock.unlock();
+            unlockAll(values);
+            completeCall();
+        }
     }
 
     @Override
-    public void unenrollStudent(String studentId, String courseCode) {
-        Student student = studentService.findById(studentId)
+    public int joinWaitlist(String studentId, String courseCode) {
+        studentService.findById(studentId)
             .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
-        
+
         Course course = courseService.findById(courseCode)
             .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
-        
-        if (!isEnrolled(studentId, courseCode)) {
-            throw new IllegalStateException(
-                String.format("Student %s is not enrolled in course %s", studentId, courseCode));
+
+        Deque<String> waitlist = waitlists.computeIfAbsent(courseCode, k -> new ConcurrentLinkedDeque<>());
+        Lock lock = studentLocks.forKey(studentId);
+        lock.lock();
+        try {
+            if (isEnrolled(studentId, courseCode)) {
+                throw new DuplicateEnrollmentException(
+                    String.format("Student %s is already enrolled in course %s", studentId, courseCode));
+            }
+            if (waitlist.contains(studentId)) {
+                throw new IllegalStateException(
+                    String.format("Student %s is already waitlisted for course %s", studentId, courseCode));
+            }
+            waitlist.offerLast(studentId);
+        } finally {
+            lock.unlock();
+        }
+        if (observedCourses.add(courseCode)) {
+            course.addChangeListener(courseListener);
         }
 
-        student.unenrollFromCourse(course);
-        grades.computeIfPresent(studentId, (id, courseGrades) -> {
-            courseGrades.remove(courseCode);
-            return courseGrades;
-        });
-        
-        studentService.update(student);
+        // A seat may already be free; 0 means the student was enrolled straight away
+        promoteFromWaitlist(course);
+        return waitlistPosition(waitlist, studentId);
+    }
+
+    @Override
+    public boolean leaveWaitlist(String studentId, String courseCode) {
+        Deque<String> waitlist = waitlists.get(courseCode);
+        return waitlist != null && waitlist.remove(studentId);
+    }
+
+    @Override
+    public List<String> getWaitlist(String courseCode) {
+        courseService.findById(courseCode)
+            .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
+
+        return new ArrayList<>(waitlists.getOrDefault(courseCode, new ConcurrentLinkedDeque<>()));
     }
 
     @Override
     public void recordGrade(String studentId, String courseCode, Grade grade) {
-        if (!isEnrolled(studentId, courseCode)) {
-            throw new IllegalStateException("Student is not enrolled in this course");
+        Student student = studentService.findById(studentId)
+            .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
+
+        Course course = courseService.findById(courseCode)
+            .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
+
+        Lock values = course.valuesReadLock();
+        values.lock();
+        Lock lock = studentLocks.forKey(studentId);
+        lock.lock();
+        try {
+            if (!isEnrolled(studentId, courseCode)) {
+                throw new IllegalStateException("Student is not enrolled in this course");
+            }
+
+            applyGrade(student, course, grade, true);
+        } finally {
+            lock.unlock();
+            values.unlock();
+            completeCall();
         }
+    }
 
-        grades.computeIfAbsent(studentId, k -> new HashMap<>())
-              .put(courseCode, grade);
-        
-        studentService.updateGpa(studentId);
+    @Override
+    public void addEnrollmentListener(EnrollmentListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    @Override
+    public void removeEnrollmentListener(EnrollmentListener listener) {
+        listeners.remove(listener);
     }
 
     @Override
@@ -99,8 +375,13 @@ public class EnrollmentServiceImpl implements EnrollmentService {
     public List<Student> getEnrolledStudents(String courseCode) {
         courseService.findById(courseCode)
             .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
-            
-        return studentService.findByEnrolledCourseCode(courseCode);
+
+        List<String> roster = store.roster(courseCode);
+        List<Student> enrolled = new ArrayList<>(roster.size());
+        for (String studentId : roster) {
+            studentService.findById(studentId).ifPresent(enrolled::add);
+        }
+        return enrolled;
     }
 
     @Override
@@ -108,8 +389,7 @@ public class EnrollmentServiceImpl implements EnrollmentService {
         if (!isEnrolled(studentId, courseCode)) {
             throw new IllegalStateException("Student is not enrolled in this course");
         }
-        return grades.getOrDefault(studentId, Collections.emptyMap())
-                    .get(courseCode);
+        return store.getGrade(studentId, courseCode);
     }
 
     @Override
@@ -129,39 +409,41 @@ public class EnrollmentServiceImpl implements EnrollmentService {
 
     @Override
     public boolean canEnroll(String studentId, String courseCode) {
-        try {
-            Student student = studentService.findById(studentId)
-                .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
-            
-            Course course = courseService.findById(courseCode)
-                .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
-            
-            if (isEnrolled(studentId, courseCode)) {
-                return false;
-            }
+        return evaluateEnrollment(studentId, courseCode).isAllowed();
+    }
 
-            if (!hasPrerequisites(studentId, courseCode)) {
-                return false;
-            }
+    @Override
+    public EnrollmentDecision evaluateEnrollment(String studentId, String courseCode) {
+        Student student = studentService.findById(studentId).orElse(null);
+        if (student == null) {
+            return EnrollmentDecision.of(EnrollmentStatus.STUDENT_NOT_FOUND);
+        }
+        Course course = courseService.findById(courseCode).orElse(null);
+        if (course == null) {
+            return EnrollmentDecision.of(EnrollmentStatus.COURSE_NOT_FOUND);
+        }
 
-            int currentCredits = calculateTotalCredits(studentId, course.getSemester());
-            return currentCredits + course.getCredits() <= maxCreditsPerSemester;
-        } catch (Exception e) {
-            return false;
+        EnrollmentDecision decision = validate(student, course, 0);
+        if (decision.isAllowed() && course.getAvailableSeats() == 0) {
+            return EnrollmentDecision.courseFull(course.getCapacity());
         }
+        return decision;
     }
 
     @Override
     public int calculateTotalCredits(String studentId, Semester semester) {
-        return getEnrolledCourses(studentId, semester).stream()
-            .mapToInt(Course::getCredits)
-            .sum();
+        Student student = studentService.findById(studentId)
+            .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
+
+        return student.getSemesterCredits(semester);
     }
 
     @Override
     public boolean hasPrerequisites(String studentId, String courseCode) {
-        // TODO: Implement prerequisite checking when prerequisites are added to Course
-        return true;
+        Course course = courseService.findById(courseCode)
+            .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
+
+        return missingPrerequisite(studentId, course) == null;
     }
 
     @Override
@@ -169,13 +451,7 @@ public class EnrollmentServiceImpl implements EnrollmentService {
         courseService.findById(courseCode)
             .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
 
-        return grades.values().stream()
-            .map(courseGrades -> courseGrades.get(courseCode))
-            .filter(Objects::nonNull)
-            .collect(Collectors.groupingBy(
-                grade -> grade,
-                Collectors.counting()
-            ));
+        return statsFor(courseCode).distribution();
     }
 
     @Override
@@ -183,12 +459,7 @@ public class EnrollmentServiceImpl implements EnrollmentService {
         courseService.findById(courseCode)
             .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
 
-        return grades.values().stream()
-            .map(courseGrades -> courseGrades.get(courseCode))
-            .filter(Objects::nonNull)
-            .mapToDouble(Grade::getPoints)
-            .average()
-            .orElse(0.0);
+        return statsFor(courseCode).average();
     }
 
     @Override
@@ -196,29 +467,362 @@ public class EnrollmentServiceImpl implements EnrollmentService {
         courseService.findById(courseCode)
             .orElseThrow(() -> new EntityNotFoundException("Course", courseCode));
 
-        return grades.entrySet().stream()
-            .filter(entry -> entry.getValue().containsKey(courseCode))
-            .sorted((e1, e2) -> {
-                Grade g1 = e1.getValue().get(courseCode);
-                Grade g2 = e2.getValue().get(courseCode);
-                return Double.compare(g2.getPoints(), g1.getPoints());
-            })
-            .limit(limit)
-            .map(entry -> studentService.findById(entry.getKey())
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+        }
+
+        CourseLeaderboard board = leaderboardFor(courseCode);
+        List<String> topIds;
+        if (limit <= board.capacity()) {
+            topIds = board.top(limit, () -> courseGrades(courseCode));
+        } else {
+            // Beyond the maintained top-K: sort the roster's grades
+            topIds = courseGrades(courseCode).entrySet().stream()
+                .sorted(CourseLeaderboard.ORDER)
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        }
+
+        return topIds.stream()
+            .map(id -> studentService.findById(id)
                 .orElse(null))
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
     }
 
-    private boolean isEnrolled(String studentId, String courseCode) {
+    @Override
+    public EnrollmentSnapshot openSnapshot() {
+        return new SnapshotView(store.openSnapshot(), courseService);
+    }
+
+    private Map<String, Grade> courseGrades(String courseCode) {
+        Map<String, Grade> courseGrades = new HashMap<>();
+        store.forEachGrade(courseCode, courseGrades::put);
+        return courseGrades;
+    }
+
+    private CourseLeaderboard leaderboardFor(String courseCode) {
+        return leaderboards.computeIfAbsent(courseCode, k -> new CourseLeaderboard(leaderboardSize));
+    }
+
+    /** First direct or transitive prerequisite the student has not passed, or {@code null}. */
+    private String missingPrerequisite(String studentId, Course course) {
+        return prerequisiteGraph.firstMissing(studentId, course, courseService::findAll);
+    }
+
+    /**
+     * Checks duplicate enrollment, prerequisites and the credit limit, in that
+     * order, counting {@code pendingCredits} as already taken in the course's
+     * semester. Seats are left to the caller.
+     */
+    private EnrollmentDecision validate(Student student, Course course, int pendingCredits) {
+        if (isEnrolled(student.getId(), course.getCode())) {
+            return EnrollmentDecision.of(EnrollmentStatus.ALREADY_ENROLLED);
+        }
+        String missing = missingPrerequisite(student.getId(), course);
+        if (missing != null) {
+            return EnrollmentDecision.prerequisiteMissing(missing);
+        }
+        int currentCredits = student.getSemesterCredits(course.getSemester()) + pendingCredits;
+        if (currentCredits + course.getCredits() > maxCreditsPerSemester) {
+            return EnrollmentDecision.creditLimitExceeded(currentCredits, course.getCredits(), maxCreditsPerSemester);
+        }
+        return EnrollmentDecision.ALLOWED;
+    }
+
+    /**
+     * Validates and applies one enrollment, reserving the seat last so a
+     * rejected attempt never holds one. Caller holds the student's lock.
+     */
+    private EnrollmentDecision tryEnroll(Student student, Course course) {
+        EnrollmentDecision decision = validate(student, course, 0);
+        if (!decision.isAllowed()) {
+            return decision;
+        }
+        if (!course.tryReserveSeat()) {
+            return EnrollmentDecision.courseFull(course.getCapacity());
+        }
+
+        boolean committed = false;
         try {
-            Student student = studentService.findById(studentId)
-                .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
-                
-            return student.getEnrolledCourses().stream()
-                .anyMatch(course -> course.getCode().equals(courseCode));
-        } catch (Exception e) {
-            return false;
+            applyEnrollment(student, course);
+            studentService.update(student);
+            committed = true;
+            return decision;
+        } finally {
+            if (!committed) {
+                course.releaseSeat();
+            }
+        }
+    }
+
+    /** Exception {@link #enrollStudent} throws for a rejected decision. */
+    private static RuntimeException rejection(String studentId, String courseCode, EnrollmentDecision decision) {
+        switch (decision.getStatus()) {
+            case STUDENT_NOT_FOUND:
+                return new EntityNotFoundException("Student", studentId);
+            case COURSE_NOT_FOUND:
+                return new EntityNotFoundException("Course", courseCode);
+            case ALREADY_ENROLLED:
+                return new DuplicateEnrollmentException(
+                    String.format("Student %s is already enrolled in course %s", studentId, courseCode));
+            case COURSE_FULL:
+                return new CourseFullException(courseCode, decision.getCapacity());
+            case PREREQUISITES_NOT_MET:
+                return new PrerequisiteNotMetException(studentId, courseCode, decision.getMissingPrerequisite());
+            case CREDIT_LIMIT_EXCEEDED:
+                return new MaxCreditLimitExceededException(
+                    "Enrolling in this course would exceed the maximum credits allowed per semester",
+                    decision.getCurrentCredits(),
+                    decision.getMaxCredits()
+                );
+            default:
+                throw new IllegalArgumentException("Not a rejection: " + decision);
+        }
+    }
+
+    /**
+     * Fills free seats from the head of the course's waitlist. Students who can
+     * no longer enroll (credit limit, prerequisites, already enrolled) are
+     * dropped from the list; if a competing enrollment takes the seat first,
+     * the head stays in place.
+     */
+    private void promoteFromWaitlist(Course course) {
+        Deque<String> waitlist = waitlists.get(course.getCode());
+        if (waitlist == null) {
+            return;
+        }
+        while (course.getAvailableSeats() > 0) {
+            String studentId = waitlist.pollFirst();
+            if (studentId == null) {
+                return;
+            }
+            Optional<Student> student = studentService.findById(studentId);
+            if (student.isEmpty()) {
+                continue;
+            }
+            EnrollmentStatus status;
+            Lock values = course.valuesReadLock();
+            values.lock();
+            Lock lock = studentLocks.forKey(studentId);
+            lock.lock();
+            try {
+                status = tryEnroll(student.get(), course).getStatus();
+            } finally {
+                lock.unlock();
+                values.unlock();
+                completeCall();
+            }
+            if (status == EnrollmentStatus.COURSE_FULL) {
+                waitlist.offerFirst(studentId);
+                return;
+            }
+        }
+    }
+
+    // Ends a call that may have fired events; the caller holds no locks
+    private void completeCall() {
+        for (EnrollmentListener listener : listeners) {
+            listener.onCallComplete();
+        }
+    }
+
+    private static int waitlistPosition(Deque<String> waitlist, String studentId) {
+        int position = 1;
+        for (String waiting : waitlist) {
+            if (waiting.equals(studentId)) {
+                return position;
+            }
+            position++;
+        }
+        return 0;
+    }
+
+    // Caller holds the student's lock and has validated the enrollment
+    private void applyEnrollment(Student student, Course course) {
+        student.enrollInCourse(course);
+        store.enroll(student.getId(), course.getCode());
+        Deque<String> waitlist = waitlists.get(course.getCode());
+        if (waitlist != null) {
+            waitlist.remove(student.getId());
+        }
+        if (observedCourses.add(course.getCode())) {
+            course.addChangeListener(courseListener);
+        }
+        for (EnrollmentListener listener : listeners) {
+            listener.onEnrolled(student.getId(), course.getCode());
+        }
+    }
+
+    /**
+     * Caller holds the student's lock and has checked the enrollment exists.
+     * Without {@code updateGpa} the stored GPA is left for the caller to refresh.
+     */
+    private void applyGrade(Student student, Course course, Grade grade, boolean updateGpa) {
+        String studentId = student.getId();
+        String courseCode = course.getCode();
+        Grade previous;
+        CourseLeaderboard board = leaderboardFor(courseCode);
+        synchronized (board) {
+            previous = store.setGrade(studentId, courseCode, grade);
+            board.replace(studentId, previous, grade);
+        }
+        prerequisiteGraph.setCompleted(studentId, courseCode, grade.isPassing());
+        statsFor(courseCode).replace(previous, grade);
+        student.applyGradeChange(previous, grade, course.getCredits());
+
+        if (updateGpa) {
+            studentService.updateGpa(studentId);
+        }
+        for (EnrollmentListener listener : listeners) {
+            listener.onGradeRecorded(studentId, courseCode, previous, grade);
+        }
+    }
+
+    private void onCourseChanged(Course course, Course.Field field, Object oldValue, Object newValue) {
+        if (field == Course.Field.CAPACITY) {
+            promoteFromWaitlist(course);
+            return;
+        }
+        if (field != Course.Field.CREDITS && field != Course.Field.SEMESTER) {
+            return;
+        }
+        // The setter holds the course's value lock, so no enrollment or grade for
+        // this course is between reading the new value and recording it
+        String courseCode = course.getCode();
+        for (String studentId : store.roster(courseCode)) {
+            Lock lock = studentLocks.forKey(studentId);
+            lock.lock();
+            try {
+                studentService.findById(studentId).ifPresent(student -> {
+                    if (field == Course.Field.SEMESTER) {
+                        student.adjustSemesterCredits((Semester) oldValue, -course.getCredits());
+                        student.adjustSemesterCredits((Semester) newValue, course.getCredits());
+                        return;
+                    }
+                    int oldCredits = (Integer) oldValue;
+                    int newCredits = (Integer) newValue;
+                    student.adjustSemesterCredits(course.getSemester(), newCredits - oldCredits);
+                    Grade grade = store.getGrade(studentId, courseCode);
+                    if (grade != null) {
+                        student.applyCreditChange(grade, oldCredits, newCredits);
+                        studentService.updateGpa(studentId);
+                    }
+                });
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes the courses' value locks in code order, so two callers never wait
+     * on each other. Course locks always come before the student's lock: a
+     * credit or semester change holds its course's lock while it takes
+     * student locks in {@link #onCourseChanged}.
+     */
+    private static List<Lock> lockCourseValues(Collection<Course> courses) {
+        List<Course> ordered = new ArrayList<>(courses);
+        ordered.sort(Comparator.comparing(Course::getCode));
+        List<Lock> held = new ArrayList<>(ordered.size());
+        for (Course course : ordered) {
+            Lock values = course.valuesReadLock();
+            values.lock();
+            held.add(values);
+        }
+        return held;
+    }
+
+    private static void unlockAll(List<Lock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private CourseGradeStats statsFor(String courseCode) {
+        return gradeStats.computeIfAbsent(courseCode, k -> new CourseGradeStats());
+    }
+
+    private boolean isEnrolled(String studentId, String courseCode) {
+        return store.isEnrolled(studentId, courseCode);
+    }
+
+    /** Store snapshot plus live course lookups for credits. */
+    private static final class SnapshotView implements EnrollmentSnapshot {
+        private final ColumnarEnrollmentStore.Snapshot snapshot;
+        private final CourseService courseService;
+
+        SnapshotView(ColumnarEnrollmentStore.Snapshot snapshot, CourseService courseService) {
+            this.snapshot = snapshot;
+            this.courseService = courseService;
+        }
+
+        @Override
+        public long getVersion() {
+            return snapshot.getStamp();
+        }
+
+        @Override
+        public boolean isEnrolled(String studentId, String courseCode) {
+            return snapshot.isEnrolled(studentId, courseCode);
+        }
+
+        @Override
+        public Grade getGrade(String studentId, String courseCode) {
+            return snapshot.getGrade(studentId, courseCode);
+        }
+
+        @Override
+        public Map<String, Grade> getEnrollments(String studentId) {
+            Map<String, Grade> enrollments = new LinkedHashMap<>();
+            snapshot.forEachEnrollment(studentId, enrollments::put);
+            return enrollments;
+        }
+
+        @Override
+        public Set<String> getStudentIds() {
+            return snapshot.studentIds();
+        }
+
+        @Override
+        public List<String> getRoster(String courseCode) {
+            return snapshot.roster(courseCode);
+        }
+
+        @Override
+        public Map<Grade, Long> getGradeDistribution(String courseCode) {
+            Map<Grade, Long> distribution = new EnumMap<>(Grade.class);
+            for (String studentId : snapshot.roster(courseCode)) {
+                Grade grade = snapshot.getGrade(studentId, courseCode);
+                if (grade != null) {
+                    distribution.merge(grade, 1L, Long::sum);
+                }
+            }
+            return distribution;
+        }
+
+        @Override
+        public double calculateGpa(String studentId) {
+            long[] totals = new long[2];
+            snapshot.forEachEnrollment(studentId, (courseCode, grade) -> {
+                if (grade != null) {
+                    int credits = courseService.findById(courseCode).map(Course::getCredits).orElse(0);
+                    totals[0] += (long) grade.getPointTenths() * credits;
+                    totals[1] += credits;
+                }
+            });
+            return totals[1] > 0 ? totals[0] / (10.0 * totals[1]) : 0.0;
+        }
+
+        @Override
+        public void forEachEnrollment(Visitor visitor) {
+            snapshot.forEachEnrollment(visitor);
+        }
+
+        @Override
+        public void close() {
+            snapshot.close();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.domain.Course;
+import edu.ccrm.domain.Grade;
+import edu.ccrm.domain.Student;
+import edu.ccrm.service.EnrollmentService;
+import edu.ccrm.service.StudentService;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares each student's incrementally maintained GPA with a full
+ * recomputation over their enrolled courses and recorded grades.
+ */
+public class GpaConsistencyChecker {
+    private static final double TOLERANCE = 1e-9;
+
+    private final StudentService studentService;
+    private final EnrollmentService enrollmentService;
+
+    public GpaConsistencyChecker(StudentService studentService, EnrollmentService enrollmentService) {
+        this.studentService = studentService;
+        this.enrollmentService = enrollmentService;
+    }
+
+    public double recomputeGpa(Student student) {
+        double totalPoints = 0.0;
+        int totalCredits = 0;
+
+        for (Course course : student.getEnrolledCourses()) {
+            Grade grade = enrollmentService.getStudentGrade(student.getId(), course.getCode());
+            if (grade != null) {
+                totalPoints += grade.getPoints() * course.getCredits();
+                totalCredits += course.getCredits();
+            }
+        }
+
+        return totalCredits > 0 ? totalPoints / totalCredits : 0.0;
+    }
+
+    public boolean isConsistent(Student student) {
+        return Math.abs(student.getGpa() - recomputeGpa(student)) <= TOLERANCE;
+    }
+
+    /** Ids of students whose stored GPA disagrees with a full recomputation. */
+    public List<String> findInconsistentStudents() {
+        List<String> inconsistent = new ArrayList<>();
+        for (Student student : studentService.findAll()) {
+            if (!isConsistent(student)) {
+                inconsistent.add(student.getId());
+            }
+        }
+        return inconsistent;
+    }
+}
\ No newline at end of file
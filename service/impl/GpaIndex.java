@@ -0,0 +1,224 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.domain.Student;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Students ordered by (GPA, id) in a concurrent skip list, kept current
+ * through {@link Student.GpaListener}. Range and top-N reads walk the list
+ * from an O(log n) seek. Rank and percentile queries use a Fenwick tree of
+ * counts over GPA buckets of 0.001, giving an O(log) prefix count that is
+ * then made exact from per-value counts inside the one bucket the query
+ * falls in.
+ *
+ * <p>Reads are lock-free and may interleave with updates; they are exact
+ * whenever no GPA is changing.
+ */
+final class GpaIndex implements Student.GpaListener {
+    private static final double MAX_GPA = 4.3;
+    private static final int BUCKETS_PER_POINT = 1000;
+    private static final int BUCKETS = (int) Math.floor(MAX_GPA * BUCKETS_PER_POINT) + 1;
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int byGpa = Double.compare(a.gpa, b.gpa);
+        if (byGpa != 0) {
+            return byGpa;
+        }
+        if (a.bound != 0 || b.bound != 0) {
+            return Integer.compare(a.bound, b.bound);
+        }
+        return a.student.getId().compareTo(b.student.getId());
+    };
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+    // 1-based Fenwick tree of entry counts per bucket
+    private final AtomicIntegerArray tree = new AtomicIntegerArray(BUCKETS + 1);
+    // Students per distinct GPA value, so walking a bucket costs its distinct values, not its students
+    private final ConcurrentSkipListMap<Double, Integer> valueCounts = new ConcurrentSkipListMap<>();
+
+    /** Starts tracking a student; holds the student's monitor so no GPA change slips between. */
+    void add(Student student) {
+        synchronized (student) {
+            student.addGpaListener(this);
+            insert(student, student.getGpa());
+        }
+    }
+
+    void remove(Student student) {
+        synchronized (student) {
+            student.removeGpaListener(this);
+            delete(student, student.getGpa());
+        }
+    }
+
+    // Called from Student.setGpa, under the student's monitor
+    @Override
+    public void onGpaChanged(Student student, double oldGpa, double newGpa) {
+        delete(student, oldGpa);
+        insert(student, newGpa);
+    }
+
+    int size() {
+        return prefix(BUCKETS);
+    }
+
+    /** Students with {@code min <= GPA <= max}, highest first. */
+    List<Student> range(double min, double max) {
+        if (min > max) {
+            return new ArrayList<>();
+        }
+        return collect(entries.subSet(Entry.low(min), true, Entry.high(max), true).descendingSet(),
+            Integer.MAX_VALUE);
+    }
+
+    /** Students with GPA strictly above {@code gpa}, highest first. */
+    List<Student> above(double gpa) {
+        return collect(entries.tailSet(Entry.high(gpa), false).descendingSet(), Integer.MAX_VALUE);
+    }
+
+    List<Student> top(int limit) {
+        return collect(entries.descendingSet(), limit);
+    }
+
+    /** Number of students with GPA below {@code gpa}, or at most {@code gpa} if {@code inclusive}. */
+    int countBelow(double gpa, boolean inclusive) {
+        if (gpa < 0.0) {
+            return 0;
+        }
+        if (gpa >= MAX_GPA && inclusive) {
+            return size();
+        }
+        int bucket = bucketOf(gpa);
+        int count = prefix(bucket);
+        for (int students : valueCounts.subMap(lowerEdge(bucket), true, gpa, inclusive).values()) {
+            count += students;
+        }
+        return count;
+    }
+
+    /**
+     * GPA at the given percentile (0-100) by the nearest-rank method, or
+     * {@code 0.0} if there are no students.
+     */
+    double gpaAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        int n = size();
+        if (n == 0) {
+            return 0.0;
+        }
+        int rank = Math.max(1, (int) Math.ceil(percentile / 100.0 * n));
+        int bucket = lowerBound(rank);
+        int count = prefix(bucket);
+        double gpa = 0.0;
+        for (Map.Entry<Double, Integer> value : valueCounts.tailMap(lowerEdge(bucket), true).entrySet()) {
+            gpa = value.getKey();
+            count += value.getValue();
+            if (count >= rank) {
+                break;
+            }
+        }
+        return gpa;
+    }
+
+    private void insert(Student student, double gpa) {
+        if (entries.add(new Entry(gpa, student, 0))) {
+            valueCounts.merge(gpa, 1, Integer::sum);
+            update(bucketOf(gpa), 1);
+        }
+    }
+
+    private void delete(Student student, double gpa) {
+        if (entries.remove(new Entry(gpa, student, 0))) {
+            valueCounts.computeIfPresent(gpa, (value, students) -> students == 1 ? null : students - 1);
+            update(bucketOf(gpa), -1);
+        }
+    }
+
+    /**
+     * Bucket {@code b} holds exactly the GPAs in {@code [lowerEdge(b), lowerEdge(b + 1))},
+     * so a bucket's entries can be reached by seeking to its edge. The product
+     * alone can round across an edge (3.3 * 1000 is 3299.9999...), hence the fix-up.
+     */
+    private static int bucketOf(double gpa) {
+        int bucket = (int) Math.floor(gpa * BUCKETS_PER_POINT);
+        if (lowerEdge(bucket + 1) <= gpa) {
+            bucket++;
+        } else if (lowerEdge(bucket) > gpa) {
+            bucket--;
+        }
+        return Math.min(Math.max(bucket, 0), BUCKETS - 1);
+    }
+
+    private static double lowerEdge(int bucket) {
+        return bucket / (double) BUCKETS_PER_POINT;
+    }
+
+    private void update(int bucket, int delta) {
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) {
+            tree.addAndGet(i, delta);
+        }
+    }
+
+    // Count of entries in buckets [0, end)
+    private int prefix(int end) {
+        int sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree.get(i);
+        }
+        return sum;
+    }
+
+    // Smallest bucket whose inclusive prefix count reaches rank
+    private int lowerBound(int rank) {
+        int position = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= BUCKETS) {
+                int count = tree.get(next);
+                if (count < remaining) {
+                    position = next;
+                    remaining -= count;
+                }
+            }
+        }
+        return Math.min(position, BUCKETS - 1);
+    }
+
+    private static List<Student> collect(NavigableSet<Entry> view, int limit) {
+        List<Student> students = new ArrayList<>();
+        for (Entry entry : view) {
+            if (students.size() == limit) {
+                break;
+            }
+            students.add(entry.student);
+        }
+        return students;
+    }
+
+    /** Index key; {@code bound} -1/+1 marks a probe sorting before/after every id at its GPA. */
+    private static final class Entry {
+        final double gpa;
+        final Student student;
+        final int bound;
+
+        Entry(double gpa, Student student, int bound) {
+            this.gpa = gpa;
+            this.student = student;
+            this.bound = bound;
+        }
+
+        static Entry low(double gpa) {
+            return new Entry(gpa, null, -1);
+        }
+
+        static Entry high(double gpa) {
+            return new Entry(gpa, null, 1);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package edu.ccrm.service.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded map that evicts least recently used entries once full.
+ * Keys are spread by hash over up to {@value #MAX_SEGMENTS} segments, each
+ * an access-ordered map with its own monitor and an equal share of the
+ * capacity, so reads of different keys rarely wait on each other. Recency
+ * is tracked per segment, which makes eviction approximately LRU overall.
+ * Operations are O(1); callers should compute values outside the cache.
+ */
+final class LruCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    // Smaller segments would evict by hash collision more than by age
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private final int capacity;
+    private final Segment<K, V>[] segments;
+    private final int segmentShift;
+
+    @SuppressWarnings("unchecked")
+    LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        this.capacity = capacity;
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_CAPACITY)));
+        this.segments = new Segment[count];
+        this.segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            // Shares differ by at most one and add up to the capacity
+            segments[i] = new Segment<>(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    void remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        // Top bits of a Fibonacci hash: the low bits pick buckets inside each segment's
+        // table, and sharing them would leave most of those buckets empty
+        int hash = key.hashCode() * 0x9E3779B9;
+        return segments[(hash >>> segmentShift) & (segments.length - 1)];
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,232 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.domain.Course;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Prerequisite DAG over the course catalogue. Course codes are interned to
+ * stable int ids; building the graph precomputes, for every course, the
+ * transitive closure of its prerequisites as a bitset.
+ * Each student's completed courses are kept as a bitset over the same ids,
+ * so a prerequisite check is a word-wise {@code required & ~completed}.
+ *
+ * <p>The graph is rebuilt lazily: after any course's prerequisites change,
+ * or when a check meets a course (or course instance) it was not built from.
+ * Completed sets are copy-on-write, so checks never lock. The catalogue
+ * refuses prerequisite edits that would close a cycle; building checks
+ * again only as a guard.
+ */
+final class PrerequisiteGraph implements Course.ChangeListener {
+    private static final long[] NONE = new long[0];
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, long[]> completed = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+    private volatile boolean dirty = true;
+
+    @Override
+    public void onChange(Course course, Course.Field field, Object oldValue, Object newValue) {
+        if (field == Course.Field.PREREQUISITES) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Code of a required course the student has not completed, or {@code null}
+     * if every direct and transitive prerequisite is satisfied.
+     *
+     * @throws IllegalStateException if the catalogue's prerequisites form a cycle
+     */
+    String firstMissing(String studentId, Course course, Supplier<Collection<Course>> catalogue) {
+        Snapshot current = snapshotFor(course, catalogue);
+        Integer id = ids.get(course.getCode());
+        if (id == null || id >= current.closures.length) {
+            // Not part of the catalogue the graph was built from
+            return null;
+        }
+        long[] required = current.closures[id];
+        long[] done = completed.getOrDefault(studentId, NONE);
+        for (int word = 0; word < required.length; word++) {
+            long missing = required[word] & ~(word < done.length ? done[word] : 0L);
+            if (missing != 0) {
+                return current.names[word * Long.SIZE + Long.numberOfTrailingZeros(missing)];
+            }
+        }
+        return null;
+    }
+
+    /** Records whether a student has completed (passed) a course. */
+    void setCompleted(String studentId, String courseCode, boolean passed) {
+        int id = intern(courseCode);
+        completed.compute(studentId, (key, words) -> {
+            long[] current = words == null ? NONE : words;
+            boolean present = id / Long.SIZE < current.length
+                && (current[id / Long.SIZE] & (1L << id)) != 0;
+            if (present == passed) {
+                return words;
+            }
+            long[] updated = Arrays.copyOf(current, Math.max(current.length, id / Long.SIZE + 1));
+            if (passed) {
+                updated[id / Long.SIZE] |= 1L << id;
+            } else {
+                updated[id / Long.SIZE] &= ~(1L << id);
+            }
+            return updated;
+        });
+    }
+
+    private Snapshot snapshotFor(Course course, Supplier<Collection<Course>> catalogue) {
+        Snapshot current = snapshot;
+        if (isStale(current, course)) {
+            current = rebuild(course, catalogue);
+        }
+        return current;
+    }
+
+    private boolean isStale(Snapshot current, Course course) {
+        return dirty || current == null || current.courses.get(course.getCode()) != course;
+    }
+
+    private synchronized Snapshot rebuild(Course course, Supplier<Collection<Course>> catalogue) {
+        // Threads that queued on the lock behind a rebuild take its result
+        Snapshot current = snapshot;
+        if (!isStale(current, course)) {
+            return current;
+        }
+        dirty = false;
+        try {
+            Snapshot built = build(catalogue.get());
+            snapshot = built;
+            return built;
+        } catch (RuntimeException e) {
+            // Keep failing checks until the catalogue is fixed, rather than serving the old graph
+            dirty = true;
+            throw e;
+        }
+    }
+
+    private Snapshot build(Collection<Course> catalogue) {
+        Map<String, Course> courses = new HashMap<>();
+        Map<String, Set<String>> prerequisites = new HashMap<>();
+        for (Course course : catalogue) {
+            courses.put(course.getCode(), course);
+            course.addChangeListener(this);
+            intern(course.getCode());
+            // Read once: the set may be replaced concurrently
+            Set<String> direct = course.getPrerequisites();
+            prerequisites.put(course.getCode(), direct);
+            for (String prerequisite : direct) {
+                intern(prerequisite);
+            }
+        }
+
+        int size;
+        String[] nameTable;
+        synchronized (names) {
+            size = names.size();
+            nameTable = names.toArray(new String[0]);
+        }
+        int[][] edges = new int[size][];
+        Arrays.fill(edges, new int[0]);
+        for (Map.Entry<String, Set<String>> entry : prerequisites.entrySet()) {
+            edges[ids.get(entry.getKey())] = entry.getValue().stream()
+                .mapToInt(ids::get)
+                .toArray();
+        }
+
+        long[][] closures = new long[size][];
+        byte[] state = new byte[size];
+        int[] path = new int[size];
+        int[] next = new int[size];
+        for (int id = 0; id < size; id++) {
+            close(id, edges, closures, state, path, next, nameTable);
+        }
+
+        return new Snapshot(courses, closures, nameTable);
+    }
+
+    // Depth-first post-order on an explicit stack, so a long chain cannot overflow the
+    // thread's own: a course's closure is the union of each direct prerequisite and that
+    // prerequisite's closure. state: 0 new, 1 on path, 2 done. path and next hold, per
+    // depth, the course and the index of its next edge to follow.
+    private static void close(int root, int[][] edges, long[][] closures, byte[] state,
+                              int[] path, int[] next, String[] names) {
+        if (state[root] != 0) {
+            return;
+        }
+        int words = (names.length + Long.SIZE - 1) / Long.SIZE;
+        state[root] = 1;
+        closures[root] = new long[words];
+        path[0] = root;
+        next[0] = 0;
+        int depth = 1;
+        while (depth > 0) {
+            int id = path[depth - 1];
+            if (next[depth - 1] == edges[id].length) {
+                state[id] = 2;
+                depth--;
+                if (depth > 0) {
+                    inherit(closures[path[depth - 1]], id, closures[id]);
+                    next[depth - 1]++;
+                }
+                continue;
+            }
+            int prerequisite = edges[id][next[depth - 1]];
+            if (state[prerequisite] == 1) {
+                StringBuilder cycle = new StringBuilder(names[prerequisite]);
+                for (int step = depth - 1; step >= 0; step--) {
+                    cycle.append(" <- ").append(names[path[step]]);
+                    if (path[step] == prerequisite) {
+                        break;
+                    }
+                }
+                throw new IllegalStateException("Prerequisite cycle detected: " + cycle);
+            }
+            if (state[prerequisite] == 0) {
+                state[prerequisite] = 1;
+                closures[prerequisite] = new long[words];
+                path[depth] = prerequisite;
+                next[depth] = 0;
+                depth++;
+                continue;
+            }
+            inherit(closures[id], prerequisite, closures[prerequisite]);
+            next[depth - 1]++;
+        }
+    }
+
+    private static void inherit(long[] closure, int prerequisite, long[] inherited) {
+        closure[prerequisite / Long.SIZE] |= 1L << prerequisite;
+        for (int word = 0; word < inherited.length; word++) {
+            closure[word] |= inherited[word];
+        }
+    }
+
+    private int intern(String courseCode) {
+        Integer id = ids.get(courseCode);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            return ids.computeIfAbsent(courseCode, code -> {
+                names.add(code);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<String, Course> courses;
+        final long[][] closures;
+        final String[] names;
+
+        Snapshot(Map<String, Course> courses, long[][] closures, String[] names) {
+            this.courses = courses;
+            this.closures = closures;
+            this.names = names;
+        }
+    }
+}
\ No newline at end of file
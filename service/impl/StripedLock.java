@@ -0,0 +1,34 @@
+package edu.ccrm.service.impl;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks addressed by key hash. Operations on the same key are
+ * serialized, while operations on different keys usually land on different
+ * stripes and run in parallel.
+ */
+final class StripedLock {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    StripedLock(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(stripeCount - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    ReentrantLock forKey(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+}
\ No newline at end of file
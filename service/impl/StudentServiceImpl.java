@@ -1,27 +1,50 @@
 package edu.ccrm.service.impl;
 
-import edu.ccrm.domain.Course;
-import edu.ccrm.domain.Grade;
 import edu.ccrm.domain.Student;
+import edu.ccrm.exception.EntityNotFoundException;
 import edu.ccrm.service.EnrollmentService;
+import edu.ccrm.service.EntityListener;
 import edu.ccrm.service.StudentService;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public class StudentServiceImpl implements StudentService {
-    private final Map<String, Student> students = new HashMap<>();
-    private final EnrollmentService enrollmentService;
+    private final Map<String, Student> students = new ConcurrentHashMap<>();
+    private final TrigramIndex<Student> names = new TrigramIndex<>();
+    private final GpaIndex gpaIndex = new GpaIndex();
+    // Set after construction: the enrollment service is built on top of this one
+    private volatile EnrollmentService enrollmentService;
+    private final List<EntityListener<Student, String>> listeners = new CopyOnWriteArrayList<>();
+
+    public StudentServiceImpl() {
+        this(null);
+    }
 
     public StudentServiceImpl(EnrollmentService enrollmentService) {
         this.enrollmentService = enrollmentService;
     }
 
+    /**
+     * Serves {@link #findByEnrolledCourseCode} from the enrollment service's
+     * roster index instead of scanning every student. Call once that service
+     * has been built on top of this one.
+     */
+    public void setEnrollmentService(EnrollmentService enrollmentService) {
+        this.enrollmentService = enrollmentService;
+    }
+
     @Override
     public Student create(Student student) {
-        if (exists(student.getId())) {
+        if (students.putIfAbsent(student.getId(), student) != null) {
             throw new IllegalArgumentException("Student already exists with ID: " + student.getId());
         }
-        students.put(student.getId(), student);
+        names.put(student, student.getFullName());
+        gpaIndex.add(student);
+        for (EntityListener<Student, String> listener : listeners) {
+            listener.onCreated(student);
+        }
         return student;
     }
 
@@ -37,19 +60,33 @@ public class StudentServiceImpl implements StudentService {
 
     @Override
     public Student update(Student student) {
-        if (!exists(student.getId())) {
+        Student previous = students.replace(student.getId(), student);
+        if (previous == null) {
             throw new IllegalArgumentException("Student not found with ID: " + student.getId());
         }
-        students.put(student.getId(), student);
+        if (previous != student) {
+            names.remove(previous);
+            names.put(student, student.getFullName());
+            gpaIndex.remove(previous);
+            gpaIndex.add(student);
+        }
+        for (EntityListener<Student, String> listener : listeners) {
+            listener.onUpdated(student);
+        }
         return student;
     }
 
     @Override
     public void delete(String id) {
-        if (!exists(id)) {
+        Student removed = students.remove(id);
+        if (removed == null) {
             throw new IllegalArgumentException("Student not found with ID: " + id);
         }
-        students.remove(id);
+        names.remove(removed);
+        gpaIndex.remove(removed);
+        for (EntityListener<Student, String> listener : listeners) {
+            listener.onDeleted(id);
+        }
     }
 
     @Override
@@ -57,8 +94,27 @@ public class StudentServiceImpl implements StudentService {
         return students.containsKey(id);
     }
 
+    @Override
+    public void addEntityListener(EntityListener<Student, String> listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    @Override
+    public void removeEntityListener(EntityListener<Student, String> listener) {
+        listeners.remove(listener);
+    }
+
     @Override
     public List<Student> findByEnrolledCourseCode(String courseCode) {
+        EnrollmentService enrollmentService = this.enrollmentService;
+        if (enrollmentService != null) {
+            // Served from the enrollment service's course roster index
+            try {
+                return enrollmentService.getEnrolledStudents(courseCode);
+            } catch (EntityNotFoundException e) {
+                return new ArrayList<>();
+            }
+        }
         return students.values().stream()
             .filter(student -> student.getEnrolledCourses().stream()
                 .anyMatch(course -> course.getCode().equals(courseCode)))
@@ -67,9 +123,39 @@ public class StudentServiceImpl implements StudentService {
 
     @Override
     public List<Student> findByGpaGreaterThan(double gpa) {
-        return students.values().stream()
-            .filter(student -> student.getGpa() > gpa)
-            .collect(Collectors.toList());
+        return gpaIndex.above(gpa);
+    }
+
+    @Override
+    public List<Student> findByGpaRange(double minGpa, double maxGpa) {
+        return gpaIndex.range(minGpa, maxGpa);
+    }
+
+    @Override
+    public List<Student> findTopByGpa(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        return gpaIndex.top(limit);
+    }
+
+    @Override
+    public int countByGpaBelow(double gpa) {
+        return gpaIndex.countBelow(gpa, false);
+    }
+
+    @Override
+    public double getGpaPercentileRank(String studentId) {
+        Student student = findById(studentId)
+            .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
+
+        int total = gpaIndex.size();
+        return total == 0 ? 0.0 : 100.0 * gpaIndex.countBelow(student.getGpa(), false) / total;
+    }
+
+    @Override
+    public double getGpaAtPercentile(double percentile) {
+        return gpaIndex.gpaAtPercentile(percentile);
     }
 
     @Override
@@ -82,10 +168,12 @@ public class StudentServiceImpl implements StudentService {
 
     @Override
     public List<Student> searchByName(String nameQuery) {
-        String query = nameQuery.toLowerCase();
-        return students.values().stream()
-            .filter(student -> student.getFullName().toLowerCase().contains(query))
-            .collect(Collectors.toList());
+        return names.search(nameQuery);
+    }
+
+    @Override
+    public List<Student> suggestByName(String nameQuery, int limit) {
+        return names.rank(nameQuery, limit);
     }
 
     @Override
@@ -102,22 +190,7 @@ public class StudentServiceImpl implements StudentService {
         Student student = findById(studentId)
             .orElseThrow(() -> new IllegalArgumentException("Student not found with ID: " + studentId));
 
-        List<Course> completedCourses = student.getEnrolledCourses();
-        if (completedCourses.isEmpty()) {
-            return 0.0;
-        }
-
-        double totalPoints = 0.0;
-        int totalCredits = 0;
-
-        for (Course course : completedCourses) {
-            Grade grade = enrollmentService.getStudentGrade(studentId, course.getCode());
-            if (grade != null) {
-                totalPoints += grade.getPoints() * course.getCredits();
-                totalCredits += course.getCredits();
-            }
-        }
-
-        return totalCredits > 0 ? totalPoints / totalCredits : 0.0;
+        // O(1): the enrollment service keeps the student's running totals current
+        return student.calculateRunningGpa();
     }
 }
\ No newline at end of file
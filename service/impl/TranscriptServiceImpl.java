@@ -0,0 +1,363 @@
+package edu.ccrm.service.impl;
+
+import edu.ccrm.config.AppConfig;
+import edu.ccrm.domain.Course;
+import edu.ccrm.domain.Grade;
+import edu.ccrm.domain.Semester;
+import edu.ccrm.domain.Student;
+import edu.ccrm.exception.EntityNotFoundException;
+import edu.ccrm.service.CourseService;
+import edu.ccrm.service.EnrollmentListener;
+import edu.ccrm.service.EnrollmentService;
+import edu.ccrm.service.EnrollmentSnapshot;
+import edu.ccrm.service.EntityListener;
+import edu.ccrm.service.StudentService;
+import edu.ccrm.service.TranscriptService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transcript service that builds each student's transcript once, rendered
+ * text and aggregates together, and answers every query from that copy.
+ * Copies live in a bounded, segmented LRU cache; bulk exports bypass it.
+ * Each student has a version that is
+ * bumped whenever the enrollment service reports a change to their
+ * enrollments or grades, or a course they take changes its title, credits
+ * or semester; a cached copy is served only while its version is current.
+ * A build reads enrollments and grades from one enrollment snapshot, so it
+ * never sees a drop or grade change half-applied.
+ */
+public class TranscriptServiceImpl implements TranscriptService {
+    private static final double PROBATION_GPA = 2.0;
+    private static final double DEANS_LIST_GPA = 3.5;
+
+    private final StudentService studentService;
+    private final CourseService courseService;
+    private final EnrollmentService enrollmentService;
+    private final int graduationCredits;
+    private final LruCache<String, Transcript> cache;
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final Course.ChangeListener courseListener = this::onCourseChanged;
+
+    public TranscriptServiceImpl(StudentService studentService, CourseService courseService,
+                                 EnrollmentService enrollmentService) {
+        this(studentService, courseService, enrollmentService, AppConfig.getInstance().getTranscriptCacheSize());
+    }
+
+    public TranscriptServiceImpl(StudentService studentService, CourseService courseService,
+                                 EnrollmentService enrollmentService, int cacheSize) {
+        this.studentService = studentService;
+        this.courseService = courseService;
+        this.enrollmentService = enrollmentService;
+        this.graduationCredits = AppConfig.getInstance().getGraduationCredits();
+        this.cache = new LruCache<>(cacheSize);
+        studentService.addEntityListener(new EntityListener<>() {
+            @Override
+            public void onDeleted(String studentId) {
+                versions.remove(studentId);
+                cache.remove(studentId);
+            }
+        });
+        enrollmentService.addEnrollmentListener(new EnrollmentListener() {
+            @Override
+            public void onEnrolled(String studentId, String courseCode) {
+                invalidate(studentId);
+            }
+
+            @Override
+            public void onUnenrolled(String studentId, String courseCode, Grade grade) {
+                invalidate(studentId);
+            }
+
+            @Override
+            public void onGradeRecorded(String studentId, String courseCode, Grade previous, Grade grade) {
+                invalidate(studentId);
+            }
+        });
+    }
+
+    @Override
+    public String generateTranscript(String studentId) {
+        return transcript(studentId).text;
+    }
+
+    @Override
+    public String generateTranscriptUncached(String studentId) {
+        Student student = studentService.findById(studentId)
+            .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
+        return build(student, versions.getOrDefault(studentId, 0L)).text;
+    }
+
+    @Override
+    public String generateSemesterTranscript(String studentId, Semester semester) {
+        return transcript(studentId).semesterTexts.get(semester);
+    }
+
+    @Override
+    public void exportTranscript(String studentId, String filePath) {
+        String text = generateTranscript(studentId);
+        Path path = Paths.get(filePath);
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(path, text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export transcript: " + path, e);
+        }
+    }
+
+    @Override
+    public double calculateSemesterGpa(String studentId, Semester semester) {
+        Transcript transcript = transcript(studentId);
+        int index = semester.ordinal();
+        return gpa(transcript.semesterPointTenths[index], transcript.semesterGradedCredits[index]);
+    }
+
+    @Override
+    public double calculateCumulativeGpa(String studentId) {
+        return transcript(studentId).cumulativeGpa();
+    }
+
+    @Override
+    public List<Course> getCompletedCourses(String studentId) {
+        return transcript(studentId).completedCourses;
+    }
+
+    @Override
+    public Map<Semester, Double> getGpaProgression(String studentId) {
+        return transcript(studentId).progression;
+    }
+
+    @Override
+    public int getTotalCreditsCompleted(String studentId) {
+        return transcript(studentId).completedCredits;
+    }
+
+    @Override
+    public int getTotalCreditsPending(String studentId) {
+        return transcript(studentId).pendingCredits;
+    }
+
+    @Override
+    public Map<Grade, Integer> getGradeDistribution(String studentId) {
+        return transcript(studentId).distribution;
+    }
+
+    @Override
+    public boolean isEligibleForGraduation(String studentId) {
+        Transcript transcript = transcript(studentId);
+        return transcript.completedCredits >= graduationCredits
+            && transcript.cumulativeGpa() >= PROBATION_GPA;
+    }
+
+    @Override
+    public boolean isOnProbation(String studentId) {
+        return transcript(studentId).onProbation();
+    }
+
+    @Override
+    public String getAcademicStanding(String studentId) {
+        return transcript(studentId).standing();
+    }
+
+    /**
+     * Cached transcript if it is still current, otherwise a fresh build. The
+     * build is cached only if no change arrived while it ran; one that
+     * arrives after the put leaves a stale version that the next read rejects.
+     */
+    private Transcript transcript(String studentId) {
+        Student student = studentService.findById(studentId)
+            .orElseThrow(() -> new EntityNotFoundException("Student", studentId));
+
+        long version = versions.getOrDefault(studentId, 0L);
+        Transcript cached = cache.get(studentId);
+        if (cached != null && cached.version == version && cached.student == student) {
+            return cached;
+        }
+        Transcript built = build(student, version);
+        if (versions.getOrDefault(studentId, 0L) == version) {
+            cache.put(studentId, built);
+        }
+        return built;
+    }
+
+    private void invalidate(String studentId) {
+        versions.merge(studentId, 1L, Long::sum);
+        cache.remove(studentId);
+    }
+
+    private void onCourseChanged(Course course, Course.Field field, Object oldValue, Object newValue) {
+        if (field != Course.Field.TITLE && field != Course.Field.CREDITS && field != Course.Field.SEMESTER) {
+            return;
+        }
+        try {
+            for (Student student : enrollmentService.getEnrolledStudents(course.getCode())) {
+                invalidate(student.getId());
+            }
+        } catch (EntityNotFoundException e) {
+            // Course no longer in the catalogue, so no enrolled students to find
+        }
+    }
+
+    private Transcript build(Student student, long version) {
+        List<Line> lines = new ArrayList<>();
+        try (EnrollmentSnapshot snapshot = enrollmentService.openSnapshot()) {
+            for (Map.Entry<String, Grade> enrollment : snapshot.getEnrollments(student.getId()).entrySet()) {
+                Optional<Course> course = courseService.findById(enrollment.getKey());
+                if (course.isEmpty()) {
+                    continue;
+                }
+                // No-op when already registered; runs only on a cache miss
+                course.get().addChangeListener(courseListener);
+                lines.add(new Line(course.get(), enrollment.getValue()));
+            }
+        }
+        lines.sort(Line.ORDER);
+        return new Transcript(student, version, lines);
+    }
+
+    private static double gpa(long pointTenths, int gradedCredits) {
+        return gradedCredits > 0 ? pointTenths / (10.0 * gradedCredits) : 0.0;
+    }
+
+    /** One enrolled course as it stood when the transcript was built. */
+    private static final class Line {
+        static final Comparator<Line> ORDER = Comparator
+            .comparingInt((Line line) -> line.semester == null ? Integer.MAX_VALUE : line.semester.getOrder())
+            .thenComparing(line -> line.course.getCode());
+
+        final Course course;
+        final String title;
+        final int credits;
+        final Semester semester;
+        final Grade grade;
+
+        Line(Course course, Grade grade) {
+            this.course = course;
+            this.title = course.getTitle();
+            this.credits = course.getCredits();
+            this.semester = course.getSemester();
+            this.grade = grade;
+        }
+    }
+
+    /** Immutable rendering and aggregates of one student's record. */
+    private static final class Transcript {
+        final Student student;
+        final long version;
+        final long[] semesterPointTenths = new long[Semester.values().length];
+        final int[] semesterGradedCredits = new int[Semester.values().length];
+        long pointTenths;
+        int gradedCredits;
+        int completedCredits;
+        int pendingCredits;
+        final List<Course> completedCourses;
+        final Map<Grade, Integer> distribution;
+        final Map<Semester, Double> progression;
+        final Map<Semester, String> semesterTexts;
+        final String text;
+
+        Transcript(Student student, long version, List<Line> lines) {
+            this.student = student;
+            this.version = version;
+            List<Course> completed = new ArrayList<>();
+            Map<Grade, Integer> grades = new EnumMap<>(Grade.class);
+            for (Line line : lines) {
+                if (line.grade == null) {
+                    pendingCredits += line.credits;
+                    continue;
+                }
+                long points = (long) line.grade.getPointTenths() * line.credits;
+                pointTenths += points;
+                gradedCredits += line.credits;
+                if (line.semester != null) {
+                    semesterPointTenths[line.semester.ordinal()] += points;
+                    semesterGradedCredits[line.semester.ordinal()] += line.credits;
+                }
+                if (line.grade.isPassing()) {
+                    completedCredits += line.credits;
+                    completed.add(line.course);
+                }
+                grades.merge(line.grade, 1, Integer::sum);
+            }
+            this.completedCourses = Collections.unmodifiableList(completed);
+            this.distribution = Collections.unmodifiableMap(grades);
+
+            Map<Semester, Double> gpas = new LinkedHashMap<>();
+            Map<Semester, String> texts = new EnumMap<>(Semester.class);
+            StringBuilder full = new StringBuilder(header());
+            Semester[] terms = Semester.values().clone();
+            Arrays.sort(terms, Comparator.comparingInt(Semester::getOrder));
+            for (Semester semester : terms) {
+                int index = semester.ordinal();
+                if (semesterGradedCredits[index] > 0) {
+                    gpas.put(semester, gpa(semesterPointTenths[index], semesterGradedCredits[index]));
+                }
+                String section = section(semester.getName(), lines, semester,
+                    gpa(semesterPointTenths[index], semesterGradedCredits[index]), semesterGradedCredits[index] > 0);
+                texts.put(semester, header() + (section.isEmpty()
+                    ? String.format("%n%s%n  No courses%n", semester.getName()) : section));
+                if (!section.isEmpty()) {
+                    full.append(section);
+                }
+            }
+            full.append(section("Unscheduled", lines, null, 0.0, false));
+            full.append(String.format("%nCumulative GPA: %.2f%n", cumulativeGpa()));
+            full.append(String.format("Credits completed: %d, in progress: %d%n", completedCredits, pendingCredits));
+            full.append(String.format("Academic standing: %s%n", standing()));
+            this.progression = Collections.unmodifiableMap(gpas);
+            this.semesterTexts = texts;
+            this.text = full.toString();
+        }
+
+        double cumulativeGpa() {
+            return gpa(pointTenths, gradedCredits);
+        }
+
+        boolean onProbation() {
+            return gradedCredits > 0 && cumulativeGpa() < PROBATION_GPA;
+        }
+
+        String standing() {
+            if (gradedCredits == 0) {
+                return "Not Yet Graded";
+            }
+            if (onProbation()) {
+                return "Academic Probation";
+            }
+            return cumulativeGpa() >= DEANS_LIST_GPA ? "Dean's List" : "Good Standing";
+        }
+
+        private String header() {
+            return String.format("ACADEMIC TRANSCRIPT%nStudent: %s (ID: %s, Reg No: %s)%n",
+                student.getFullName(), student.getId(), student.getRegNo());
+        }
+
+        // Courses of one semester (or with none, for null); empty if there are none
+        private static String section(String heading, List<Line> lines, Semester semester,
+                                      double gpa, boolean graded) {
+            StringBuilder section = new StringBuilder();
+            for (Line line : lines) {
+                if (line.semester != semester) {
+                    continue;
+                }
+                if (section.length() == 0) {
+                    section.append(String.format("%n%s%n", heading));
+                }
+                section.append(String.format("  %-10s %-40s %2d  %s%n", line.course.getCode(), line.title,
+                    line.credits, line.grade == null ? "In Progress" : line.grade.name()));
+            }
+            if (graded) {
+                section.append(String.format("  Semester GPA: %.2f%n", gpa));
+            }
+            return section.toString();
+        }
+    }
+}
\ No newline at end of file
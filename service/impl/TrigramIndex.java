@@ -0,0 +1,160 @@
+package edu.ccrm.service.impl;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory trigram index for case-insensitive substring search. Each key's
+ * text is lower-cased once on insert; a query intersects the posting sets of
+ * its trigrams and verifies the surviving candidates with {@code contains}.
+ * Writers are serialized on the index, readers never block.
+ */
+final class TrigramIndex<K> {
+    private final Map<K, String> texts = new ConcurrentHashMap<>();
+    private final Map<Long, Set<K>> postings = new ConcurrentHashMap<>();
+
+    synchronized void put(K key, String text) {
+        if (text == null) {
+            remove(key);
+            return;
+        }
+        String lower = text.toLowerCase();
+        String previous = texts.put(key, lower);
+        Set<Long> grams = trigrams(pad(lower));
+        if (previous != null) {
+            for (Long gram : trigrams(pad(previous))) {
+                if (!grams.contains(gram)) {
+                    unpost(gram, key);
+                }
+            }
+        }
+        for (Long gram : grams) {
+            postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    synchronized void remove(K key) {
+        String previous = texts.remove(key);
+        if (previous != null) {
+            for (Long gram : trigrams(pad(previous))) {
+                unpost(gram, key);
+            }
+        }
+    }
+
+    /** Keys whose text contains {@code query}, ignoring case. */
+    List<K> search(String query) {
+        String lower = query.toLowerCase();
+        List<K> result = new ArrayList<>();
+        if (lower.length() < 3) {
+            // Too short to carry a trigram: fall back to the pre-lowered texts
+            texts.forEach((key, text) -> {
+                if (text.contains(lower)) {
+                    result.add(key);
+                }
+            });
+            return result;
+        }
+
+        List<Set<K>> sets = new ArrayList<>();
+        for (Long gram : trigrams(lower)) {
+            Set<K> posting = postings.get(gram);
+            if (posting == null || posting.isEmpty()) {
+                return result;
+            }
+            sets.add(posting);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        Set<K> smallest = sets.get(0);
+        for (K key : smallest) {
+            if (inAll(sets, key)) {
+                String text = texts.get(key);
+                if (text != null && text.contains(lower)) {
+                    result.add(key);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keys ranked by trigram similarity to {@code query}, tolerating typos.
+     * Texts are padded so word boundaries carry weight, as in pg_trgm. Exact
+     * substring matches rank first; ties are broken by text. A negative
+     * {@code limit} is rejected.
+     */
+    List<K> rank(String query, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+        }
+        String lower = query.toLowerCase();
+        if (lower.isBlank()) {
+            List<K> matches = search(query);
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        }
+        Set<Long> queryGrams = trigrams(pad(lower));
+
+        Map<K, Integer> shared = new HashMap<>();
+        for (Long gram : queryGrams) {
+            Set<K> posting = postings.get(gram);
+            if (posting != null) {
+                for (K key : posting) {
+                    shared.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<K, Double>> scored = new ArrayList<>(shared.size());
+        for (Map.Entry<K, Integer> entry : shared.entrySet()) {
+            String text = texts.get(entry.getKey());
+            if (text == null) {
+                continue;
+            }
+            int common = entry.getValue();
+            int candidateGrams = text.length() + 1;
+            double score = (double) common / (queryGrams.size() + candidateGrams - common);
+            if (text.contains(lower)) {
+                score += 1.0;
+            }
+            scored.add(new AbstractMap.SimpleEntry<>(entry.getKey(), score));
+        }
+
+        scored.sort(Comparator.<Map.Entry<K, Double>>comparingDouble(Map.Entry::getValue).reversed()
+            .thenComparing(entry -> texts.getOrDefault(entry.getKey(), "")));
+
+        List<K> result = new ArrayList<>(Math.min(limit, scored.size()));
+        for (int i = 0; i < scored.size() && i < limit; i++) {
+            result.add(scored.get(i).getKey());
+        }
+        return result;
+    }
+
+    private void unpost(Long gram, K key) {
+        Set<K> posting = postings.get(gram);
+        if (posting != null) {
+            posting.remove(key);
+        }
+    }
+
+    private boolean inAll(List<Set<K>> sets, K key) {
+        for (int i = 1; i < sets.size(); i++) {
+            if (!sets.get(i).contains(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String pad(String text) {
+        return "  " + text + " ";
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+}
\ No newline at end of file